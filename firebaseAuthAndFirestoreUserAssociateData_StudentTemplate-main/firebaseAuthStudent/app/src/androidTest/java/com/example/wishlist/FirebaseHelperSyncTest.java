@@ -0,0 +1,190 @@
+package com.example.wishlist;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the snapshot listener sync in FirebaseHelper against the local emulators.
+ * Start them first with "firebase emulators:start --project demo-wishlist".
+ *
+ * FirebaseHelper may only be used on the main thread, so every call to it goes through
+ * onMainThread.  The test thread only waits and checks the published snapshot, which is safe to
+ * read from any thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FirebaseHelperSyncTest {
+    // the host machine as seen from the Android emulator
+    private static final String EMULATOR_HOST = "10.0.2.2";
+
+    private FirebaseAuth auth;
+    private FirebaseHelper helper;
+
+    @BeforeClass
+    public static void useEmulators() {
+        // only allowed once per process, before Firestore is used, so not in every test
+        FirebaseAuth.getInstance().useEmulator(EMULATOR_HOST, 9099);
+        FirebaseFirestore.getInstance().useEmulator(EMULATOR_HOST, 8080);
+    }
+
+    @Before
+    public void signUp() throws Exception {
+        auth = FirebaseAuth.getInstance();
+        helper = new FirebaseHelper(auth, FirebaseFirestore.getInstance(), null,
+                Executors.newFixedThreadPool(FirebaseHelper.DEFAULT_IO_THREADS));
+        String email = UUID.randomUUID() + "@example.com";
+        Tasks.await(auth.createUserWithEmailAndPassword(email, "password"), 10, TimeUnit.SECONDS);
+        String uid = auth.getUid();
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                helper.updateUid(uid);
+            }
+        });
+    }
+
+    @After
+    public void signOut() {
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                helper.updateUid(null);
+            }
+        });
+        auth.signOut();
+    }
+
+    @Test
+    public void writesAreAppliedWithoutFullRead() throws Exception {
+        CountDownLatch added = new CountDownLatch(1);
+        CountDownLatch edited = new CountDownLatch(1);
+        FirebaseHelper.FirestoreCallback callback = new FirebaseHelper.FirestoreCallback() {
+            @Override
+            public void onCallback(List<WishListItem> myList) {
+                for (WishListItem w : myList) {
+                    if (w.getItemName().equals("Bike")) {
+                        added.countDown();
+                    }
+                    if (w.getItemName().equals("Red bike")) {
+                        edited.countDown();
+                    }
+                }
+            }
+        };
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                helper.attachReadDataToUser(callback);
+                helper.addData(new WishListItem("Bike", "Bike shop", 1));
+            }
+        });
+        assertTrue(added.await(10, TimeUnit.SECONDS));
+        assertEquals(1, helper.getWishListItems().size());
+
+        // items in the list are read only, the edit goes on a copy like EditItemActivity does
+        WishListItem w = helper.getWishListItems().get(0).copy();
+        w.setItemName("Red bike");
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                helper.editData(w);
+            }
+        });
+        assertTrue(edited.await(10, TimeUnit.SECONDS));
+        // the modified document replaced the old one instead of being appended
+        assertEquals(1, helper.getWishListItems().size());
+    }
+
+    @Test
+    public void pendingSyncClearsOnceTheServerHasTheWrite() throws Exception {
+        AtomicBoolean sawPending = new AtomicBoolean();
+        CountDownLatch confirmed = new CountDownLatch(1);
+        WishListRepository.ListObserver observer = new WishListRepository.ListObserver() {
+            @Override
+            public void onListChanged(WishListSnapshot snapshot) {
+                for (WishListItem w : snapshot.getItems()) {
+                    if (w.isPendingSync()) {
+                        sawPending.set(true);
+                    }
+                    else if (sawPending.get()) {
+                        confirmed.countDown();
+                    }
+                }
+            }
+        };
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                // send right away instead of waiting in the write buffer
+                helper.setWriteBuffering(0, 1);
+                helper.addListObserver(observer);
+                helper.attachReadDataToUser();
+                helper.addData(new WishListItem("Lamp", "Target", 2));
+            }
+        });
+        // shown right away, faded until the server has it
+        assertTrue(sawPending.get());
+
+        // the acknowledgement has to publish a new snapshot with a new, confirmed item
+        assertTrue(confirmed.await(10, TimeUnit.SECONDS));
+        WishListSnapshot snapshot = helper.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertFalse(snapshot.getItems().get(0).isPendingSync());
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                helper.removeListObserver(observer);
+            }
+        });
+    }
+
+    @Test
+    public void signingOutWithAWriteStillOutLeavesTheNextListAlone() throws Exception {
+        CountDownLatch finished = new CountDownLatch(1);
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                // a short deadline, so the bulk call reports back even if the write never lands
+                helper.setRetryPolicy(new RetryPolicy(1, 0, 0, 1000));
+                helper.attachReadDataToUser();
+                helper.addAll(Arrays.asList(new WishListItem("Bike", "Bike shop", 1),
+                        new WishListItem("Lamp", "Target", 2)), new FirebaseHelper.BulkCallback() {
+                    @Override
+                    public void onComplete(int succeeded, int failed) {
+                        finished.countDown();
+                    }
+                });
+                // sign out while the batch is still on its way
+                helper.updateUid(null);
+            }
+        });
+
+        // finishing after the sign out used to try to read the list of a null user
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        // and nothing of the old user's came back into the signed out list
+        assertEquals(0, helper.getSnapshot().size());
+    }
+
+    private static void onMainThread(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+}
@@ -26,6 +26,13 @@ public class AddItemActivity extends AppCompatActivity {
 
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // don't leave changes waiting in the write buffer once the user leaves this screen
+        WishListApplication.getFirebaseHelper().flushPendingWrites();
+    }
+
     public void seeList(View v) {
         // will go to activity that displays all data in a listview
         Intent intent = new Intent(AddItemActivity.this, ViewListActivity.class);
@@ -44,7 +51,7 @@ public class AddItemActivity extends AppCompatActivity {
 
         WishListItem wishListItem = new WishListItem(itemName, itemLocation, itemPriority);
         //insert firebaseHelper code to addData
-        MainActivity.firebaseHelper.addData(wishListItem);
+        WishListApplication.getFirebaseHelper().addData(wishListItem);
         nameET.setText("");
         locationET.setText("");
 
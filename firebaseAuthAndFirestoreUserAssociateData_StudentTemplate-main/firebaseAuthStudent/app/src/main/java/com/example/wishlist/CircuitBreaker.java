@@ -0,0 +1,128 @@
+package com.example.wishlist;
+
+/**
+ * Stops FirebaseHelper from sending more writes while Firestore keeps failing.  Without it every
+ * flush during an outage would wait out its own timeouts and retries, one after another.
+ *
+ *  - CLOSED is normal, everything is sent.  failureThreshold failures in a row open it
+ *  - OPEN sends nothing for openMs.  writes wait in the write buffer instead
+ *  - HALF_OPEN comes after that wait and lets one request through as a test.  if it works the
+ *    breaker closes again, if not it opens for another openMs.  every request has to end in
+ *    onSuccess, onFailure or onNeutral, or the next trial never gets its turn
+ *
+ * Thread safe, although FirebaseHelper only uses it on the main thread.
+ */
+public class CircuitBreaker {
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_MS = 30000;
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    public interface Clock {
+        long nowMillis();
+    }
+
+    // nanoTime doesn't jump when the user changes the phone's clock
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nowMillis() {
+            return System.nanoTime() / 1000000;
+        }
+    };
+
+    private final int failureThreshold;
+    private final long openMs;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt;
+    private boolean trialInFlight = false;
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MS, SYSTEM_CLOCK);
+    }
+
+    /**
+     * @param failureThreshold  failures in a row that open the breaker
+     * @param openMs            how long it stays open before trying again
+     */
+    public CircuitBreaker(int failureThreshold, long openMs, Clock clock) {
+        if (failureThreshold < 1 || openMs < 0) {
+            throw new IllegalArgumentException("Bad circuit breaker settings");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+        this.clock = clock;
+    }
+
+    /**
+     * @return  true if a request may be sent now.  in HALF_OPEN only the first caller gets true
+     *          until that request reports back
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.nowMillis() - openedAt < openMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.nowMillis();
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * For a request that ended without saying anything about Firestore's health, e.g. it was
+     * rejected as bad data or the caller stopped waiting for it.  The count stays the same, but
+     * if it was the HALF_OPEN trial the next request may go through as a new trial.
+     */
+    public synchronized void onNeutral() {
+        trialInFlight = false;
+    }
+
+    /**
+     * @return  how long until allowRequest() can say yes again, 0 if it already can
+     */
+    public synchronized long millisUntilRetry() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openedAt + openMs - clock.nowMillis());
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker{" +
+                "state=" + state +
+                ", consecutiveFailures=" + consecutiveFailures +
+                '}';
+    }
+}
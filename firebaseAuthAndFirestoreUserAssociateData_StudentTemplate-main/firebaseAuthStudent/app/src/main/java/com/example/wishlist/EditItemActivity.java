@@ -1,5 +1,6 @@
 package com.example.wishlist;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
 import android.content.Intent;
@@ -9,9 +10,14 @@ import android.widget.EditText;
 import android.widget.Toast;
 
 public class EditItemActivity extends AppCompatActivity {
+    // the intent only carries the docID, the item itself comes from WishListItemStore
+    public static final String EXTRA_DOC_ID = "DOC_ID";
+    // only used if Android killed the app while this screen was in the background
+    private static final String STATE_ITEM = "ITEM_TO_EDIT";
 
     private EditText itemNameET, itemLocation;
     private WishListItem w;
+    private String docID;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -22,22 +28,81 @@ public class EditItemActivity extends AppCompatActivity {
         itemNameET = findViewById(R.id.itemNameET);
 
         Intent intent = getIntent();
-        w = intent.getParcelableExtra("ITEM_TO_EDIT");
-        itemNameET.setText(w.getItemName());
-        itemLocation.setText(w.getItemLocation());
+        docID = intent.getStringExtra(EXTRA_DOC_ID);
+        w = findItem(savedInstanceState);
+        if (w == null) {
+            // it was deleted, or we lost it when the app was restarted
+            Toast.makeText(this, "That item is no longer on your list", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+        // the EditTexts put back whatever was typed themselves after a rotation
+        if (savedInstanceState == null) {
+            itemNameET.setText(w.getItemName());
+            itemLocation.setText(w.getItemLocation());
+        }
+    }
+
+    private WishListItem findItem(Bundle savedInstanceState) {
+        // FirebaseHelper's list has the newest copy, but the item may only have been on a page
+        // ViewListActivity read itself, and then the item store has it
+        WishListItem shared = WishListApplication.getFirebaseHelper().findByDocId(docID);
+        if (shared == null) {
+            shared = WishListApplication.getItemStore().get(docID);
+        }
+        if (shared != null) {
+            // other screens hold the same object and it must never change, see updateData
+            return copyOf(shared);
+        }
+        if (savedInstanceState != null) {
+            return savedInstanceState.getParcelable(STATE_ITEM);
+        }
+        return null;
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // the item store is gone if the process is killed, so keep one small copy here just in case
+        outState.putParcelable(STATE_ITEM, w);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (isFinishing()) {
+            WishListApplication.getItemStore().release(docID);
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // don't leave changes waiting in the write buffer once the user leaves this screen
+        WishListApplication.getFirebaseHelper().flushPendingWrites();
     }
 
     public void updateData(View v) {
         String newName = itemNameET.getText().toString();
         String newLocation = itemLocation.getText().toString();
-        String docID = w.getDocID();
-        w.setItemLocation(newLocation);
-        w.setItemName(newName);
+        // a new copy for every save.  once editData has it, the old one is FirebaseHelper's undo
+        // point, so changing it again would change the list behind its back.  starting clean
+        // also means each save only sends the fields changed since the last one
+        WishListItem edited = copyOf(w);
+        edited.setItemLocation(newLocation);
+        edited.setItemName(newName);
         // firebaseHelper code
-        MainActivity.firebaseHelper.editData(w);
+        WishListApplication.getFirebaseHelper().editData(edited);
+        w = edited;
         Toast.makeText(this, "Data updated", Toast.LENGTH_SHORT).show();
     }
 
+    // just the fields, no change tracking
+    private static WishListItem copyOf(WishListItem item) {
+        return new WishListItem(item.getItemName(), item.getItemLocation(),
+                item.getItemPriority(), item.getDocID());
+    }
+
 
     public void showList(View v) {
         // will go to activity that displays all data in a listview
@@ -47,7 +112,7 @@ public class EditItemActivity extends AppCompatActivity {
 
     public void deleteItem(View v) {
         // firebaseHelper code
-        MainActivity.firebaseHelper.deleteData(w);
+        WishListApplication.getFirebaseHelper().deleteData(w);
         Toast.makeText(this, "Data updated", Toast.LENGTH_SHORT).show();
     }
 
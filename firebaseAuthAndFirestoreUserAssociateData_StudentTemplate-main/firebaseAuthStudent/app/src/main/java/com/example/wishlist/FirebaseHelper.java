@@ -3,34 +3,55 @@ package com.example.wishlist;
 import static androidx.core.content.ContextCompat.startActivity;
 
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.google.android.gms.tasks.CancellationTokenSource;
 import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.AuthResult;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The purpose of this class is to hold ALL the code to communicate with Firebase.  This class
@@ -41,42 +62,267 @@ import java.util.concurrent.Executor;
  * our other classes clean of the firebase code and also avoid having to update firebase code
  * in many places.  This is MUCH more efficient and less error prone.
  */
-public class FirebaseHelper {
+public class FirebaseHelper implements WishListRepository {
     public final String TAG = "Denna";
-    private static String uid = null;            // var will be updated for currently signed in user
+    // the signed in user.  only updateUid changes it, SessionManager calls that whenever
+    // FirebaseAuth says the user changed
+    private String uid = null;
+    // goes up every time uid changes.  a write or read started for one user checks it when it
+    // comes back, so it can't touch the next user's list
+    private long session = 0;
 
     // create two instance vars for firebaseAuth and firebaseFirestore that will give me access to
     // my project on Firebase. the json file is what links this app to that project
     private FirebaseAuth mAuth;
     private FirebaseFirestore db;
+    // the working copy of the list.  only the main thread reads or changes it.  everyone else
+    // gets the read-only copy in published, see getSnapshot()
     private ArrayList<WishListItem> myItems = new ArrayList<>();
+    // volatile so a new snapshot is seen by every thread as soon as it is assigned
+    private volatile WishListSnapshot published = WishListSnapshot.EMPTY;
+
+    // when incrementalSync is true we keep ONE long lived snapshot listener on the user's
+    // myWishList collection and only apply the changes Firestore sends us (added, modified,
+    // removed) instead of clearing myItems and re-reading every document after each write.
+    // set it to false to go back to the original "full read after every write" behavior
+    private boolean incrementalSync = true;
+    private ListenerRegistration wishListListener;
+    private String listeningUid;
+    private FirestoreCallback syncCallback;
+
+    // writes we have already shown in myItems but that Firestore hasn't confirmed yet.
+    // a LinkedHashMap keeps them in the order they were made, keyed by the client generated id
+    private LinkedHashMap<String, PendingMutation> pendingMutations = new LinkedHashMap<>();
+
+    // screens that want to redraw whenever myItems changes (see addListObserver)
+    private ArrayList<ListObserver> listObservers = new ArrayList<>();
+
+    // copy of the list saved on the device so it can be shown before Firestore answers.
+    // null means we don't keep one
+    private WishListCache localCache;
+    // true until the listener's first snapshot arrives.  that snapshot is the whole list, so it
+    // replaces whatever we loaded from the local cache
+    private boolean awaitingFirstSnapshot = false;
+
+    // Firestore normally calls our listeners on the main (UI) thread.  turning every document
+    // into a WishListItem there makes the screen freeze on big lists, so that work is done on
+    // ioExecutor instead.  only the finished result is handed back to the main thread, which is
+    // the only thread allowed to touch myItems
+    public static final int DEFAULT_IO_THREADS = 2;
+    private Executor ioExecutor;
+    private Executor snapshotExecutor;      // ioExecutor, but one snapshot at a time in order
+    private Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /* Offline-first.  Firestore keeps its own copy of everything we read and write in a database
+    on the device.  With offlineFirst on:
+     - that copy is kept between launches and trimmed back to cacheSizeBytes (least recently
+       used documents go first), see setCacheSizeBytes
+     - reads answer from that copy first and then check the server in the background
+     - writes made with no connection wait in Firestore's queue on the device (it survives the
+       app being closed) and are sent in order once we are back online
+     - every item knows if it has a change that hasn't reached the server yet, see
+       WishListItem.isPendingSync()
+    Both settings have to be made before Firestore is first used, see db()
+     */
+    public static final long DEFAULT_CACHE_SIZE_BYTES = 20L * 1024 * 1024;
+    private boolean offlineFirst = true;
+    private long cacheSizeBytes = DEFAULT_CACHE_SIZE_BYTES;
+    // true while the listener's latest snapshot came from the device instead of the server
+    private boolean offline = false;
+
+    // timings and counters for everything below, see getMetrics()
+    private final WishListMetrics metrics = new WishListMetrics();
+
+    // search tables over myItems, kept in step with every change to it
+    // it also remembers what changed, so each published snapshot can say (see publishSnapshot)
+    private WishListIndex itemIndex = new WishListIndex(true);
+
+    // see setWriteBuffering / flushPendingWrites
+    private WriteBuffer writeBuffer = new WriteBuffer();
+    private long flushDelayMs = DEFAULT_FLUSH_DELAY_MS;
+    private int flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+    private ArrayList<FirestoreCallback> flushCallbacks = new ArrayList<>();
+    private Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushPendingWrites();
+        }
+    };
+
+    // see RetryingCall
+    private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private final Random retryRandom = new Random();
+    private ArrayList<WriteFailureListener> writeFailureListeners = new ArrayList<>();
 
     public FirebaseHelper() {
         // set up mAuth and db by calling the getInstance() method and this will create the
         // connection to the instance of Auth and Firestore for this project
+        this((WishListCache) null);
+    }
+
+    /**
+     * Use this constructor to keep a copy of the list on the device.  The saved list is loaded
+     * by the first attachReadDataToUser() so screens have something to show while Firestore
+     * catches up.
+     *
+     * @param localCache    where to save and load the list
+     */
+    public FirebaseHelper(WishListCache localCache) {
+        this(localCache, Executors.newFixedThreadPool(DEFAULT_IO_THREADS));
+    }
+
+    /**
+     * @param localCache    where to save and load the list, or null to not keep a copy
+     * @param ioExecutor    where to turn Firestore documents into WishListItems.  keep it a
+     *                      small, bounded pool - this work is CPU bound
+     */
+    public FirebaseHelper(WishListCache localCache, Executor ioExecutor) {
+        // Firestore is set up the first time it is needed, see db()
+        this(FirebaseAuth.getInstance(), null, localCache, ioExecutor);
+    }
+
+    /**
+     * Use this constructor to hand the helper its own Auth and Firestore, e.g. ones made from a
+     * second FirebaseApp in a test, instead of the default ones for the project.
+     *
+     * @param db    the Firestore to use, or null to use the default one once it is first needed
+     */
+    public FirebaseHelper(FirebaseAuth mAuth, FirebaseFirestore db, WishListCache localCache,
+                          Executor ioExecutor) {
+        this.mAuth = mAuth;
+        this.db = db;
+        this.localCache = localCache;
+        this.ioExecutor = ioExecutor;
+        this.snapshotExecutor = new SerialExecutor(ioExecutor);
+        // nothing is read here.  SessionManager calls attachReadDataToUser() once it knows
+        // someone is signed in, so making the helper stays cheap and the list is only read once
+    }
+
+    /**
+     * Use this constructor to point the helper at the local Firebase emulators instead of the
+     * real project (see firebase.json in the project folder for the ports).  From the Android
+     * emulator the host machine is reachable at 10.0.2.2.  The emulators must be set up BEFORE
+     * any reads or writes happen, which is why this can't be a normal setter.
+     *
+     * @param emulatorHost  host running "firebase emulators:start"
+     */
+    public FirebaseHelper(String emulatorHost) {
         mAuth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
-        // we need to connect the data reading to logged in user if applicable
-        attachReadDataToUser();
+        applySettings(db);
+        ioExecutor = Executors.newFixedThreadPool(DEFAULT_IO_THREADS);
+        snapshotExecutor = new SerialExecutor(ioExecutor);
+        mAuth.useEmulator(emulatorHost, 9099);
+        db.useEmulator(emulatorHost, 8080);
+    }
+
+    // setting up Firestore takes a while (it opens its local database), so it waits until
+    // something actually reads or writes.  only called on the main thread
+    private FirebaseFirestore db() {
+        if (db == null) {
+            long start = System.nanoTime();
+            db = FirebaseFirestore.getInstance();
+            applySettings(db);
+            metrics.trace("firestoreInit", start, System.nanoTime() - start);
+        }
+        return db;
+    }
+
+    private void applySettings(FirebaseFirestore db) {
+        FirebaseFirestoreSettings settings = new FirebaseFirestoreSettings.Builder()
+                .setPersistenceEnabled(offlineFirst)
+                .setCacheSizeBytes(cacheSizeBytes)
+                .build();
+        db.setFirestoreSettings(settings);
+    }
+
+    /**
+     * Turns offline-first mode on or off (it is on by default).  Off means Firestore doesn't keep
+     * anything on the device between launches and reads always wait for the server.  Call it
+     * before the first read or write.
+     *
+     * @throws IllegalStateException if Firestore is already in use
+     */
+    public void setOfflineFirst(boolean offlineFirst) {
+        checkFirestoreNotStarted();
+        this.offlineFirst = offlineFirst;
+    }
 
+    /**
+     * How much room Firestore's copy of the data can take up on the device before it starts
+     * throwing out the documents that were used least recently.  Call it before the first read
+     * or write.
+     *
+     * @param cacheSizeBytes    at least 1 MB, or FirebaseFirestoreSettings.CACHE_SIZE_UNLIMITED
+     *                          to never throw anything out
+     * @throws IllegalStateException if Firestore is already in use
+     */
+    public void setCacheSizeBytes(long cacheSizeBytes) {
+        checkFirestoreNotStarted();
+        this.cacheSizeBytes = cacheSizeBytes;
+    }
+
+    private void checkFirestoreNotStarted() {
+        if (db != null) {
+            throw new IllegalStateException("Firestore settings can't change once it is in use");
+        }
+    }
+
+    /**
+     * @return  true if the list on screen came from the device because the server can't be
+     *          reached.  only known while listening (see setIncrementalSync)
+     */
+    public boolean isOffline() {
+        return offline;
     }
 
     public FirebaseAuth getmAuth() {
         return mAuth;
     }
 
+    /**
+     * @return  how long reads and writes are taking and how much is being sent, see WishListMetrics
+     */
+    public WishListMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setIncrementalSync(boolean incrementalSync) {
+        this.incrementalSync = incrementalSync;
+        if (!incrementalSync) {
+            stopListening();
+        }
+    }
+
     public void attachReadDataToUser() {
+        attachReadDataToUser(new FirestoreCallback() {
+            @Override
+            public void onCallback(List<WishListItem> myList) {
+                Log.i(TAG, "Inside attachReadDataToUser, onCallback");
+            }
+        });
+    }
+
+    /**
+     * Same as attachReadDataToUser() but lets the caller know every time the list changes.
+     * With incrementalSync on, the callback fires once with the first snapshot of the list and
+     * then again every time the snapshot listener applies a change.
+     *
+     * @param firestoreCallback     called with the latest snapshot's items each time the list is updated
+     */
+    @Override
+    public void attachReadDataToUser(FirestoreCallback firestoreCallback) {
         // This method will do an initial read of the database when we login or create a user
-        if (mAuth.getCurrentUser() != null)
+        if (uid != null)
         {
-            // redundant but guarantees that the UID var is correct
-            uid = mAuth.getUid();
-            readData(new FirestoreCallback() {
-                @Override
-                public void onCallback(ArrayList<WishListItem> myList) {
-                    Log.i(TAG, "Inside attachReadDataToUser, onCallback");
-                }
-            });
+            loadFromLocalCache();
+            if (incrementalSync) {
+                startListening(firestoreCallback);
+            }
+            else {
+                readData(firestoreCallback);
+            }
         }
         else
         {
@@ -94,29 +340,37 @@ public class FirebaseHelper {
         // Add a new document to the collection called users with a docID = UID of the authorized user.
         // By passing in newUID as a parameter to document, we are able to tell the document
         // what we want its docID to be equal to
-        db.collection("users").document(newUID)
-                .set(user)
-                .addOnSuccessListener(new OnSuccessListener<Void>() {
-                    @Override
-                    public void onSuccess(Void unused) {
-                        Log.i(TAG, name + " 's user account added");
-                    }
-                })
-                .addOnFailureListener(new OnFailureListener() {
-                    @Override
-                    public void onFailure(@NonNull Exception e) {
-                        Log.d(TAG, "Error adding user account", e);
-                    }
-                });
+        DocumentReference userDoc = db().collection("users").document(newUID);
+        long start = System.nanoTime();
+        // set() with the same data is safe to send twice, so it can be retried
+        RetryingCall<Void> call = new RetryingCall<>("addUser", new TaskFactory<Void>() {
+            @Override
+            public Task<Void> start() {
+                return userDoc.set(user);
+            }
+        }, new OnCompleteListener<Void>() {
+            @Override
+            public void onComplete(@NonNull Task<Void> task) {
+                metrics.record(WishListMetrics.Op.USER, start);
+                if (task.isSuccessful()) {
+                    Log.i(TAG, name + " 's user account added");
+                }
+                else {
+                    Log.d(TAG, "Error adding user account", task.getException());
+                }
+            }
+        });
+        call.startWhenAllowed();
     }
 
+    @Override
     public void addData(WishListItem w) {
         // this is the method that is called from the activity. it receives the WishListItem we want to add
         // to Firestore. this method is overloaded with a private addData method that incorporates the
         // interface to handle the async method calls.
         addData(w, new FirestoreCallback() {
             @Override
-            public void onCallback(ArrayList<WishListItem> myList) {
+            public void onCallback(List<WishListItem> myList) {
                 Log.i(TAG, "inside addData, onCallBack");
             }
         });
@@ -124,42 +378,197 @@ public class FirebaseHelper {
 
     private void addData(WishListItem w, FirestoreCallback firestoreCallback)
     {
-        db.collection("users").document(uid).collection("myWishList")
-                .add(w)
-                .addOnSuccessListener(new OnSuccessListener<DocumentReference>() {
-                    @Override
-                    public void onSuccess(DocumentReference documentReference) {
-                        // this will add the object and return a reference to the newly created document
-                        // in the parameter documentReference. we want to set the instance variable of this
-                        // WishListItem docID to equal the actual docID of the document.
-
-                        // we will call update method on this document to set its docID variable
-                        db.collection("users").document(uid).collection("myWishList")
-                                .document(documentReference.getId()).update("docID", documentReference.getId());
-                        Log.i(TAG, "just added " + w.getItemName());
-                        readData(firestoreCallback);
-                    }
-                })
-                .addOnFailureListener(new OnFailureListener() {
+        if (!isSignedIn("add " + w.getItemName())) {
+            firestoreCallback.onCallback(published.getItems());
+            return;
+        }
+        // calling document() with no path makes a reference with a new random docID right here
+        // on the device, without talking to the server.  that way the docID is already inside the
+        // WishListItem when we save it and the whole thing is ONE write instead of an add() followed
+        // by an update() of the docID field
+        DocumentReference newDoc = db().collection("users").document(uid).collection("myWishList")
+                .document();
+        w.setDocID(newDoc.getId());
+
+        // show the item right away, before Firestore has even seen it
+        PendingMutation mutation = applyLocally(PendingMutation.Type.ADD, w);
+        publishList();
+
+        // the set() happens when the write buffer is flushed
+        bufferWrite(mutation, firestoreCallback);
+        Log.i(TAG, "just added " + w.getItemName());
+    }
+
+    /**
+     * @return  the list as of the last change.  it is read only and never changes, call this
+     *          again to get newer data
+     */
+    @Override
+    public List<WishListItem> getWishListItems() {
+        return published.getItems();
+    }
+
+    /**
+     * Safe to call from any thread, it doesn't lock anything.
+     *
+     * @return  the last published copy of the list, with its version
+     */
+    @Override
+    public WishListSnapshot getSnapshot() {
+        return published;
+    }
+
+    /**
+     * Searches the items already on the device, it does not read from Firestore.  Fast enough to
+     * call on every key press.
+     *
+     * @param prefix    the start of any word in the item name
+     * @param limit     at most this many results
+     */
+    public List<WishListItem> searchByName(String prefix, int limit) {
+        return itemIndex.searchByName(prefix, limit);
+    }
+
+    /**
+     * @param location  one word of the location
+     */
+    public List<WishListItem> findByLocation(String location) {
+        return itemIndex.findByLocation(location);
+    }
+
+    public List<WishListItem> findByPriority(int min, int max) {
+        return itemIndex.findByPriority(min, max);
+    }
+
+    public WishListItem findByDocId(String docId) {
+        return itemIndex.get(docId);
+    }
+
+    /**
+     * Makes a pager over the current user's list sorted by name.  Use this instead of
+     * getWishListItems() when the list is too big to show all at once.
+     *
+     * @param pageSize  how many items to read from Firestore at a time
+     * @return  a pager that hasn't loaded anything yet, call loadFirstPage() on it.  null if no
+     *          one is signed in, there is no list to page through
+     */
+    public WishListPager getPager(int pageSize) {
+        if (!isSignedIn("page through the list")) {
+            return null;
+        }
+        Query byName = db().collection("users").document(uid).collection("myWishList")
+                .orderBy("itemName");
+        // the pages are mapped on ioExecutor, like every other read
+        WishListPager pager = new WishListPager(byName, ioExecutor, pageSize,
+                WishListPager.DEFAULT_PREFETCH_DISTANCE, WishListPager.DEFAULT_MAX_RESIDENT_PAGES);
+        if (wishListListener != null && uid.equals(listeningUid) && !awaitingFirstSnapshot) {
+            // the listener already has every document on the device, reading the pages from the
+            // server again would be paying for the same documents twice
+            pager.setSource(Source.CACHE);
+        }
+        return pager;
+    }
+
+    /* Sorted / filtered queries.  These run on the server, so asking for the top 20 items only
+    reads 20 documents no matter how long the list is.  Lower itemPriority means the item is
+    wanted more (1 is the most wanted), so results are sorted by priority and then by name.
+    Firestore needs a composite index for these, see firestore.indexes.json in the project folder.
+    The results are NOT put in myItems, they are handed straight to the callback.
+     */
+    public static final int NO_LIMIT = 0;
+
+    /**
+     * @param count     how many items to get
+     * @param firestoreCallback gets the most wanted items, most wanted first
+     */
+    public void getMostWanted(int count, FirestoreCallback firestoreCallback) {
+        queryWishList(null, null, null, count, firestoreCallback);
+    }
+
+    /**
+     * Reads the items that match the filters, sorted by priority then name.
+     *
+     * @param minPriority   lowest priority to include, or null for no lower bound
+     * @param maxPriority   highest priority to include, or null for no upper bound
+     * @param location      only items with exactly this location, or null for any location
+     * @param limit         at most this many items, or NO_LIMIT
+     * @param firestoreCallback gets the matching items on the main thread.  always called, with
+     *                          an empty list if no one is signed in or the query failed
+     */
+    public void queryWishList(@Nullable Integer minPriority, @Nullable Integer maxPriority,
+                              @Nullable String location, int limit,
+                              FirestoreCallback firestoreCallback) {
+        if (uid == null) {
+            Log.i(TAG, "No one is logged in, nothing to query");
+            firestoreCallback.onCallback(new ArrayList<WishListItem>());
+            return;
+        }
+        Query query = buildQuery(minPriority, maxPriority, location, limit);
+        long start = System.nanoTime();
+        query.get()
+                .addOnCompleteListener(ioExecutor, new OnCompleteListener<QuerySnapshot>() {
                     @Override
-                    public void onFailure(@NonNull Exception e)
-                    {
-                        Log.i(TAG, "Eroor adding document", e);
+                    public void onComplete(@NonNull Task<QuerySnapshot> task) {
+                        metrics.record(WishListMetrics.Op.READ, start);
+                        if (!task.isSuccessful()) {
+                            // a FAILED_PRECONDITION here means the index is missing, the message
+                            // has a link that creates it
+                            Log.d(TAG, "Error running query", task.getException());
+                            // the screen is waiting on this, an empty answer lets it move on
+                            mainHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    firestoreCallback.onCallback(new ArrayList<WishListItem>());
+                                }
+                            });
+                            return;
+                        }
+                        ArrayList<WishListItem> results = new ArrayList<>(task.getResult().size());
+                        for (DocumentSnapshot doc : task.getResult()) {
+                            results.add(WishListItemMapper.fromSnapshot(doc));
+                        }
+                        countReads(results);
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                Log.i(TAG, "Query returned " + results.size() + " item(s)");
+                                firestoreCallback.onCallback(results);
+                            }
+                        });
                     }
                 });
     }
 
-    public ArrayList<WishListItem> getWishListItems() {
-        return myItems;
+    private Query buildQuery(@Nullable Integer minPriority, @Nullable Integer maxPriority,
+                             @Nullable String location, int limit) {
+        Query query = db().collection("users").document(uid).collection("myWishList");
+        // equality filters have to come first in the index, then the field with the range filter,
+        // which also has to be the first orderBy
+        if (location != null) {
+            query = query.whereEqualTo(WishListItemMapper.FIELD_LOCATION, location);
+        }
+        if (minPriority != null) {
+            query = query.whereGreaterThanOrEqualTo(WishListItemMapper.FIELD_PRIORITY, minPriority);
+        }
+        if (maxPriority != null) {
+            query = query.whereLessThanOrEqualTo(WishListItemMapper.FIELD_PRIORITY, maxPriority);
+        }
+        query = query.orderBy(WishListItemMapper.FIELD_PRIORITY)
+                .orderBy(WishListItemMapper.FIELD_NAME);
+        if (limit > 0) {
+            query = query.limit(limit);
+        }
+        return query;
     }
     
+    @Override
     public void editData(WishListItem w) {
         // edit WishListItem w to the database
         // this method is overloaded and incorporates the interface to handle the async calls
         editData(w, new FirestoreCallback() {
             @Override
-            public void onCallback(ArrayList<WishListItem> myList) {
-                Log.i(TAG, "Inside editData, onCallback" + myList.toString());
+            public void onCallback(List<WishListItem> myList) {
+                Log.i(TAG, "Inside editData, onCallback");
             }
         });
 
@@ -168,31 +577,42 @@ public class FirebaseHelper {
     private void editData(WishListItem w, FirestoreCallback firestoreCallback)
     {
         String docId = w.getDocID();
-        db.collection("users").document(uid).collection("myWishList")
-                .document(docId)
-                .set(w)
-                .addOnSuccessListener(new OnSuccessListener<Void>() {
-                    @Override
-                    public void onSuccess(Void unused) {
-                        Log.i(TAG, "Success updating document");
-                        readData(firestoreCallback);
-                    }
-                })
-                .addOnFailureListener(new OnFailureListener() {
-                    @Override
-                    public void onFailure(@NonNull Exception e) {
-                        Log.i(TAG, "Error updating document", e);
-                    }
-                });
+        if (isUnsavedDocId(docId)) {
+            Log.i(TAG, w.getItemName() + " was never saved, can't edit it");
+            return;
+        }
+
+        if (!isSignedIn("edit " + w.getItemName())) {
+            firestoreCallback.onCallback(published.getItems());
+            return;
+        }
+
+        // the setters on WishListItem remember which fields were changed.  if none were, there is
+        // nothing to save and we don't send a write at all
+        int changed = w.getDirtyFields();
+        if (changed == 0) {
+            Log.i(TAG, w.getItemName() + " has no changes, nothing to save");
+            firestoreCallback.onCallback(published.getItems());
+            return;
+        }
+
+        // swap the new version into the list now, and remember the old one in case this fails
+        PendingMutation mutation = applyLocally(PendingMutation.Type.EDIT, w);
+        publishList();
+
+        // when the buffer is flushed this becomes an update() of only the changed fields, so only
+        // those go over the network
+        bufferWrite(mutation, firestoreCallback);
     }
 
+    @Override
     public void deleteData(WishListItem w) {
         // delete item w from database
         // this method is overloaded and incorporates the interface to handle the async calls
         deleteData(w, new FirestoreCallback() {
             @Override
-            public void onCallback(ArrayList<WishListItem> myList) {
-                Log.i(TAG, "Inside deleteData, onCallBack" + myList.toString());
+            public void onCallback(List<WishListItem> myList) {
+                Log.i(TAG, "Inside deleteData, onCallBack");
             }
         });
     }
@@ -201,26 +621,769 @@ public class FirebaseHelper {
     {
         // delete item w from database
         String docId = w.getDocID();
-        db.collection("users").document(uid).collection("myWishList")
-                .document(docId)
-                .delete()
-                .addOnSuccessListener(new OnSuccessListener<Void>() {
+        if (isUnsavedDocId(docId)) {
+            Log.i(TAG, w.getItemName() + " was never saved, can't delete it");
+            return;
+        }
+        if (!isSignedIn("delete " + w.getItemName())) {
+            firestoreCallback.onCallback(published.getItems());
+            return;
+        }
+
+        // take it out of the list now, and remember where it was in case this fails
+        PendingMutation mutation = applyLocally(PendingMutation.Type.DELETE, w);
+        publishList();
+
+        bufferWrite(mutation, firestoreCallback);
+    }
+
+    /* Write-behind buffer.  Single item adds, edits and deletes are not sent right away.  They
+    wait in writeBuffer for flushDelayMs, and every new write restarts that wait, so a burst of
+    quick changes goes out together.  Changes to the same document are folded into one write (see
+    WriteBuffer).  The buffer is also flushed as soon as it holds flushThreshold documents, and
+    screens call flushPendingWrites() in onPause so nothing waits around when the user leaves.
+    Since the list was already updated locally the user never sees the delay.
+     */
+    public static final long DEFAULT_FLUSH_DELAY_MS = 750;
+    public static final int DEFAULT_FLUSH_THRESHOLD = 25;
+
+    /**
+     * @param flushDelayMs      how long to wait after the last change before sending.
+     *                          0 sends every change right away
+     * @param flushThreshold    send right away once this many documents are waiting
+     */
+    public void setWriteBuffering(long flushDelayMs, int flushThreshold) {
+        this.flushDelayMs = flushDelayMs;
+        this.flushThreshold = flushThreshold;
+    }
+
+    private void bufferWrite(PendingMutation mutation, FirestoreCallback firestoreCallback) {
+        // changes that cancelled each other out (add then delete) are done already
+        for (PendingMutation cancelled : writeBuffer.put(mutation)) {
+            pendingMutations.remove(cancelled.getMutationId());
+        }
+        flushCallbacks.add(firestoreCallback);
+
+        if (flushDelayMs <= 0 || writeBuffer.size() >= flushThreshold) {
+            flushPendingWrites();
+        }
+        else {
+            mainHandler.removeCallbacks(flushRunnable);
+            mainHandler.postDelayed(flushRunnable, flushDelayMs);
+        }
+    }
+
+    /**
+     * Sends everything in the write buffer now.  Call this when leaving a screen (onPause) so
+     * changes don't sit on the device.
+     */
+    @Override
+    public void flushPendingWrites() {
+        flushPendingWrites(false);
+    }
+
+    /**
+     * @param ignoreBreaker true to send even if the circuit breaker is open, e.g. because the
+     *                      user is about to change and these writes belong to the old one
+     */
+    private void flushPendingWrites(boolean ignoreBreaker) {
+        mainHandler.removeCallbacks(flushRunnable);
+        ArrayList<FirestoreCallback> callbacks = new ArrayList<>(flushCallbacks);
+        flushCallbacks.clear();
+        BulkCallback done = new BulkCallback() {
+            @Override
+            public void onComplete(int succeeded, int failed) {
+                for (FirestoreCallback callback : callbacks) {
+                    callback.onCallback(published.getItems());
+                }
+            }
+        };
+        if (writeBuffer.isEmpty()) {
+            done.onComplete(0, 0);
+            return;
+        }
+        // offline the writes belong in Firestore's queue on the device, not held back here
+        if (!ignoreBreaker && !offline && !circuitBreaker.allowRequest()) {
+            // Firestore keeps failing.  don't keep the screen waiting, the writes stay in the
+            // buffer (still shown as pending) and we try again when the breaker lets us
+            long retryMs = circuitBreaker.millisUntilRetry();
+            Log.i(TAG, "Firestore is failing, holding " + writeBuffer.size() + " write(s) for " + retryMs + " ms");
+            mainHandler.postDelayed(flushRunnable, Math.max(retryMs, flushDelayMs));
+            done.onComplete(0, 0);
+            return;
+        }
+        List<WriteBuffer.BufferedWrite> writes = writeBuffer.drain();
+        Log.i(TAG, "Flushing " + writes.size() + " buffered write(s)");
+        commitInBatches(writes, done);
+    }
+
+    /* Bulk operations.  Instead of one write (and one callback) per item, these put up to
+    MAX_BATCH_SIZE writes into a single WriteBatch, which Firestore commits all-or-nothing.
+    Big lists are split into several batches, and at most MAX_PARALLEL_BATCHES of them are
+    sent at once so we don't flood the connection.  The local list is updated once for the
+    whole call, and the BulkCallback hears about the whole call once at the end.
+     */
+    public static final int MAX_BATCH_SIZE = 500;           // Firestore's limit per WriteBatch
+    public static final int MAX_PARALLEL_BATCHES = 3;
+
+    public void addAll(List<WishListItem> items, BulkCallback bulkCallback) {
+        if (!isSignedIn("add " + items.size() + " item(s)")) {
+            bulkCallback.onComplete(0, items.size());
+            return;
+        }
+        for (WishListItem w : items) {
+            // new docIDs are made on the device, same as addData
+            w.setDocID(db().collection("users").document(uid).collection("myWishList")
+                    .document().getId());
+        }
+        writeInBatches(PendingMutation.Type.ADD, items, bulkCallback);
+    }
+
+    public void updateAll(List<WishListItem> items, BulkCallback bulkCallback) {
+        writeInBatches(PendingMutation.Type.EDIT, items, bulkCallback);
+    }
+
+    public void deleteAll(List<WishListItem> items, BulkCallback bulkCallback) {
+        writeInBatches(PendingMutation.Type.DELETE, items, bulkCallback);
+    }
+
+    public void clearList(BulkCallback bulkCallback) {
+        if (!isSignedIn("clear the list")) {
+            bulkCallback.onComplete(0, 0);
+            return;
+        }
+        if (wishListListener != null) {
+            // the listener already has every document, no need to read them again
+            deleteAll(new ArrayList<>(myItems), bulkCallback);
+            return;
+        }
+        long clearSession = session;
+        db().collection("users").document(uid).collection("myWishList")
+                .get()
+                .addOnCompleteListener(ioExecutor, new OnCompleteListener<QuerySnapshot>() {
                     @Override
-                    public void onSuccess(Void unused) {
-                        Log.i(TAG, w.getItemName() + "successfully deleted");
-                        readData(firestoreCallback);
+                    public void onComplete(@NonNull Task<QuerySnapshot> task) {
+                        if (task.isSuccessful()) {
+                            ArrayList<WishListItem> items = new ArrayList<>();
+                            for (DocumentSnapshot doc : task.getResult()) {
+                                items.add(WishListItemMapper.fromSnapshot(doc));
+                            }
+                            countReads(items);
+                            mainHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (clearSession != session) {
+                                        // these are the last user's items
+                                        bulkCallback.onComplete(0, 0);
+                                        return;
+                                    }
+                                    deleteAll(items, bulkCallback);
+                                }
+                            });
+                        }
+                        else {
+                            Log.d(TAG, "Error getting documents to clear", task.getException());
+                            mainHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    bulkCallback.onComplete(0, 0);
+                                }
+                            });
+                        }
+                    }
+                });
+    }
+
+    private void writeInBatches(PendingMutation.Type type, List<WishListItem> items,
+                                BulkCallback bulkCallback) {
+        if (!isSignedIn(type + " " + items.size() + " item(s)")) {
+            bulkCallback.onComplete(0, items.size());
+            return;
+        }
+        // anything still buffered has to reach Firestore before the bulk writes do
+        flushPendingWrites();
+
+        // apply everything locally first and tell the UI one time
+        ArrayList<WriteBuffer.BufferedWrite> writes = new ArrayList<>();
+        for (WishListItem w : items) {
+            if (isUnsavedDocId(w.getDocID())) {
+                Log.i(TAG, w.getItemName() + " was never saved, skipping it");
+                continue;
+            }
+            writes.add(new WriteBuffer.BufferedWrite(applyLocally(type, w)));
+        }
+        publishList();
+
+        if (writes.isEmpty()) {
+            bulkCallback.onComplete(0, 0);
+            return;
+        }
+        // same as flushPendingWrites, offline the writes go to Firestore's queue on the device
+        if (!offline && !circuitBreaker.allowRequest()) {
+            // Firestore keeps failing.  the writes go back in the write buffer, still shown as
+            // pending, and leave with the first flush the breaker lets through
+            for (WriteBuffer.BufferedWrite write : writes) {
+                for (PendingMutation mutation : write.getMutations()) {
+                    for (PendingMutation cancelled : writeBuffer.put(mutation)) {
+                        pendingMutations.remove(cancelled.getMutationId());
+                    }
+                }
+            }
+            long retryMs = circuitBreaker.millisUntilRetry();
+            Log.i(TAG, "Firestore is failing, holding " + writes.size() + " bulk write(s) for " + retryMs + " ms");
+            mainHandler.removeCallbacks(flushRunnable);
+            mainHandler.postDelayed(flushRunnable, Math.max(retryMs, flushDelayMs));
+            bulkCallback.onComplete(0, 0);
+            return;
+        }
+        commitInBatches(writes, bulkCallback);
+    }
+
+    // the callers have already asked the circuit breaker, so this just sends
+    private void commitInBatches(List<WriteBuffer.BufferedWrite> writes, BulkCallback bulkCallback) {
+        if (!isSignedIn("send " + writes.size() + " write(s)")) {
+            bulkCallback.onComplete(0, writes.size());
+            return;
+        }
+        // cut the list into chunks that each fit in one WriteBatch
+        ArrayList<List<WriteBuffer.BufferedWrite>> chunks = new ArrayList<>();
+        for (int start = 0; start < writes.size(); start += MAX_BATCH_SIZE) {
+            chunks.add(writes.subList(start, Math.min(start + MAX_BATCH_SIZE, writes.size())));
+        }
+        // the path is fixed now, so the chunks (and their retries) still go to this user's list if
+        // the user changes before they are all sent
+        BulkProgress progress = new BulkProgress(chunks, bulkCallback, session,
+                db().collection("users").document(uid).collection("myWishList"));
+        // offline a commit doesn't finish until we are back online, so waiting on each one would
+        // keep the rest in memory where closing the app loses them.  hand them all to Firestore's
+        // queue on the device instead, it sends them in order when it can
+        int window = offline ? chunks.size() : MAX_PARALLEL_BATCHES;
+        for (int i = 0; i < window && i < chunks.size(); i++) {
+            commitNextChunk(progress);
+        }
+    }
+
+    private void commitNextChunk(BulkProgress progress) {
+        if (progress.nextChunk >= progress.chunks.size()) {
+            return;
+        }
+        List<WriteBuffer.BufferedWrite> chunk = progress.chunks.get(progress.nextChunk);
+        progress.nextChunk++;
+
+        CollectionReference myWishList = progress.myWishList;
+        long start = System.nanoTime();
+        // a batch can only be committed once, so every try builds a new one.  retrying is safe:
+        // adds use the docID made on the device so a second set() can't make a duplicate, and
+        // sending the same update or delete twice leaves the same result
+        RetryingCall<Void> call = new RetryingCall<>("commit", new TaskFactory<Void>() {
+            @Override
+            public Task<Void> start() {
+                return buildBatch(myWishList, chunk).commit();
+            }
+        }, new OnCompleteListener<Void>() {
+            @Override
+            public void onComplete(@NonNull Task<Void> task) {
+                // every write in the batch took as long as the whole batch, retries included
+                for (WriteBuffer.BufferedWrite write : chunk) {
+                    metrics.record(opFor(write.getType()), start);
+                }
+                // false if the user signed out or switched accounts while this was out.  myItems
+                // is someone else's list now, so there is nothing to mark or put back in it
+                boolean sameSession = progress.session == session;
+                if (task.isSuccessful()) {
+                    countWrites(chunk);
+                    writesCommitted++;
+                    boolean synced = false;
+                    if (sameSession) {
+                        for (WriteBuffer.BufferedWrite write : chunk) {
+                            for (PendingMutation mutation : write.getMutations()) {
+                                pendingMutations.remove(mutation.getMutationId());
+                            }
+                            synced |= markSynced(write.getItem());
+                        }
+                    }
+                    if (synced) {
+                        publishList();
+                    }
+                }
+                else {
+                    // the batch is all-or-nothing, so every item in it gets undone,
+                    // newest change first
+                    Log.i(TAG, "Error committing batch of " + chunk.size(), task.getException());
+                    ArrayList<WishListItem> failed = new ArrayList<>(chunk.size());
+                    for (int i = chunk.size() - 1; i >= 0; i--) {
+                        if (sameSession) {
+                            List<PendingMutation> mutations = chunk.get(i).getMutations();
+                            for (int j = mutations.size() - 1; j >= 0; j--) {
+                                undo(mutations.get(j));
+                            }
+                        }
+                        failed.add(chunk.get(i).getItem());
                     }
-                })
-                .addOnFailureListener(new OnFailureListener() {
+                    notifyWriteFailed(failed, task.getException());
+                }
+                if (progress.deferred.contains(chunk)) {
+                    // the caller already gave up waiting on this one, just show the result
+                    if (sameSession) {
+                        publishList();
+                    }
+                    return;
+                }
+                if (task.isSuccessful()) {
+                    progress.succeeded += chunk.size();
+                }
+                else {
+                    progress.failed += chunk.size();
+                }
+                chunkFinished(progress);
+            }
+        });
+        call.setOnDeadline(new Runnable() {
+            @Override
+            public void run() {
+                // stop holding up the caller.  the items stay pending and the retries carry on
+                Log.i(TAG, "Batch of " + chunk.size() + " passed its deadline, still trying");
+                progress.deferred.add(chunk);
+                chunkFinished(progress);
+            }
+        });
+        call.start();
+    }
+
+    private WriteBatch buildBatch(CollectionReference myWishList, List<WriteBuffer.BufferedWrite> chunk) {
+        WriteBatch batch = db().batch();
+        for (WriteBuffer.BufferedWrite write : chunk) {
+            WishListItem w = write.getItem();
+            switch (write.getType()) {
+                case ADD:
+                    batch.set(myWishList.document(w.getDocID()), write.getData());
+                    break;
+                case EDIT:
+                    // only the fields the setters changed
+                    batch.update(myWishList.document(w.getDocID()), write.getData());
+                    break;
+                case DELETE:
+                    batch.delete(myWishList.document(w.getDocID()));
+                    break;
+            }
+        }
+        return batch;
+    }
+
+    private void chunkFinished(BulkProgress progress) {
+        progress.finishedChunks++;
+        if (progress.finishedChunks == progress.chunks.size()) {
+            finishBulk(progress);
+        }
+        else {
+            commitNextChunk(progress);
+        }
+    }
+
+    private static WishListMetrics.Op opFor(PendingMutation.Type type) {
+        switch (type) {
+            case ADD:
+                return WishListMetrics.Op.ADD;
+            case EDIT:
+                return WishListMetrics.Op.EDIT;
+            default:
+                return WishListMetrics.Op.DELETE;
+        }
+    }
+
+    private void countWrites(List<WriteBuffer.BufferedWrite> writes) {
+        long bytes = 0;
+        for (WriteBuffer.BufferedWrite write : writes) {
+            // a delete only sends the document's name
+            int mask = write.getType() == PendingMutation.Type.DELETE
+                    ? WishListItemMapper.MASK_DOC_ID : write.getMask();
+            bytes += WishListItemMapper.estimateSize(write.getItem(), mask);
+        }
+        metrics.countWrites(writes.size(), bytes);
+    }
+
+    // runs on a background thread, metrics is thread safe
+    private void countReads(List<WishListItem> items) {
+        long bytes = 0;
+        for (WishListItem w : items) {
+            bytes += WishListItemMapper.estimateSize(w, WishListItemMapper.MASK_ALL);
+        }
+        metrics.countReads(items.size(), bytes);
+    }
+
+    private void finishBulk(BulkProgress progress) {
+        Log.i(TAG, "Bulk write done: " + progress.succeeded + " ok, " + progress.failed + " failed, "
+                + progress.deferred.size() + " batch(es) still trying");
+        if (progress.session != session) {
+            // the user changed, there is no list of theirs left to show or refresh
+            progress.bulkCallback.onComplete(progress.succeeded, progress.failed);
+            return;
+        }
+        if (progress.failed > 0) {
+            publishList();
+        }
+        // one refresh for the whole bulk call
+        refreshAfterWrite(new FirestoreCallback() {
+            @Override
+            public void onCallback(List<WishListItem> myList) {
+                progress.bulkCallback.onComplete(progress.succeeded, progress.failed);
+            }
+        });
+    }
+
+    // keeps count of how a bulk call is going.  all the callbacks run on the main thread so
+    // plain ints are fine here
+    private static class BulkProgress {
+        final List<List<WriteBuffer.BufferedWrite>> chunks;
+        final BulkCallback bulkCallback;
+        final long session;
+        final CollectionReference myWishList;
+        int nextChunk = 0;
+        int finishedChunks = 0;
+        int succeeded = 0;
+        int failed = 0;
+        // chunks that passed their deadline and were counted as finished before they were
+        ArrayList<List<WriteBuffer.BufferedWrite>> deferred = new ArrayList<>();
+
+        BulkProgress(List<List<WriteBuffer.BufferedWrite>> chunks, BulkCallback bulkCallback,
+                     long session, CollectionReference myWishList) {
+            this.chunks = chunks;
+            this.bulkCallback = bulkCallback;
+            this.session = session;
+            this.myWishList = myWishList;
+        }
+    }
+
+    /**
+     * Switches to another user's list.  SessionManager calls this, screens shouldn't need to.
+     *
+     * @param uid   the newly signed in user, or null after signing out
+     */
+    @Override
+    public void updateUid(String uid) {
+        if (uid == null ? this.uid == null : uid.equals(this.uid)) {
+            return;
+        }
+        // anything still waiting in the write buffer belongs to the user we are leaving, so it
+        // has to go now even if the circuit breaker is open
+        if (this.uid != null) {
+            flushPendingWrites(true);
+        }
+        // signing out means the saved copy of the old user's list shouldn't stay on the device
+        if (uid == null && this.uid != null && localCache != null) {
+            localCache.evict(this.uid);
+        }
+        // a different user (or no user) means the listener is pointing at the wrong list
+        if (uid == null || !uid.equals(listeningUid)) {
+            stopListening();
+        }
+        this.uid = uid;
+        session++;
+    }
+
+    /**
+     * @return  the signed in user's uid, or null
+     */
+    public String getUid() {
+        return uid;
+    }
+
+    private void loadFromLocalCache() {
+        // preload only fills an empty list.  when something is already showing (a warm list from
+        // SessionManager, or the listener's) reading the file on the main thread would be wasted
+        if (localCache != null && myItems.isEmpty() && !uid.equals(listeningUid)) {
+            preload(localCache.load(uid));
+        }
+    }
+
+    /**
+     * Shows items we already had for this user (saved on the device, or kept from earlier in the
+     * session) until Firestore answers.  Only fills an empty list - if we already have data it
+     * is newer.
+     */
+    void preload(List<WishListItem> items) {
+        if (uid == null || items.isEmpty() || !myItems.isEmpty() || uid.equals(listeningUid)) {
+            return;
+        }
+        myItems.addAll(items);
+        indexAll(items);
+        Log.i(TAG, "Showing " + items.size() + " item(s) we already had");
+        publishList();
+    }
+
+    public int getPendingMutationCount() {
+        return pendingMutations.size();
+    }
+
+    private PendingMutation applyLocally(PendingMutation.Type type, WishListItem w) {
+        // the caller still has w and may change it again, so the list gets its own copy.  that
+        // way nothing already published ever changes, and previous really is the old version
+        WishListItem item = w.copy();
+        // it stays faded on screen until Firestore confirms it
+        item.setPendingSync(type != PendingMutation.Type.DELETE);
+        int index = indexOfDocId(item.getDocID());
+        WishListItem previous = null;
+        switch (type) {
+            case ADD:
+                myItems.add(item);
+                itemIndex.put(item);
+                break;
+            case EDIT:
+                previous = index >= 0 ? myItems.set(index, item) : null;
+                if (previous != null) {
+                    itemIndex.put(item);
+                }
+                break;
+            case DELETE:
+                previous = index >= 0 ? myItems.remove(index) : null;
+                itemIndex.remove(item.getDocID());
+                break;
+        }
+        PendingMutation mutation = new PendingMutation(type, item, previous, index);
+        pendingMutations.put(mutation.getMutationId(), mutation);
+        return mutation;
+    }
+
+    // Firestore has w now.  unless a newer change already replaced it in the list, swap in a copy
+    // that isn't pending anymore.  returns true if the list changed
+    private boolean markSynced(WishListItem w) {
+        int index = indexOfDocId(w.getDocID());
+        if (index < 0 || myItems.get(index) != w) {
+            return false;
+        }
+        WishListItem synced = w.copy();
+        synced.clearDirtyFields();
+        synced.setPendingSync(false);
+        myItems.set(index, synced);
+        itemIndex.put(synced);
+        return true;
+    }
+
+    private void undo(PendingMutation mutation) {
+        pendingMutations.remove(mutation.getMutationId());
+        switch (mutation.getType()) {
+            case ADD:
+                int index = indexOfDocId(mutation.getItem().getDocID());
+                if (index >= 0) {
+                    myItems.remove(index);
+                    itemIndex.remove(mutation.getItem().getDocID());
+                }
+                break;
+            case EDIT:
+                index = indexOfDocId(mutation.getItem().getDocID());
+                if (index >= 0 && mutation.getPrevious() != null) {
+                    myItems.set(index, mutation.getPrevious());
+                    itemIndex.put(mutation.getPrevious());
+                }
+                break;
+            case DELETE:
+                if (mutation.getPrevious() != null && indexOfDocId(mutation.getPrevious().getDocID()) < 0) {
+                    myItems.add(Math.min(mutation.getPreviousIndex(), myItems.size()), mutation.getPrevious());
+                    itemIndex.put(mutation.getPrevious());
+                }
+                break;
+        }
+    }
+
+    private void reapplyPendingMutations() {
+        WishListMerge.reapply(myItems, itemIndex, pendingMutations.values());
+    }
+
+    private int indexOfDocId(String docId) {
+        return WishListMerge.indexOfDocId(myItems, itemIndex, docId);
+    }
+
+    private void indexAll(List<WishListItem> items) {
+        for (WishListItem w : items) {
+            itemIndex.put(w);
+        }
+    }
+
+    // every write goes under users/{uid}, so with no one signed in there is nowhere to put it.
+    // the caller drops the call and tells its callback instead of letting Firestore throw
+    private boolean isSignedIn(String what) {
+        if (uid == null) {
+            Log.i(TAG, "No one is signed in, can't " + what);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isUnsavedDocId(String docId) {
+        return docId == null || docId.isEmpty() || docId.equals(WishListItem.NO_DOC_ID);
+    }
+
+    /**
+     * Register to hear about EVERY change to the list - reads, listener updates and local
+     * writes.  Remember to remove the observer when the screen goes away.
+     *
+     * @param observer  called on the main thread with a new snapshot each time the list changes
+     */
+    @Override
+    public void addListObserver(ListObserver observer) {
+        listObservers.add(observer);
+    }
+
+    @Override
+    public void removeListObserver(ListObserver observer) {
+        listObservers.remove(observer);
+    }
+
+    private void publishList() {
+        notifyListObservers();
+        // let whoever attached to the list know it changed
+        if (syncCallback != null) {
+            syncCallback.onCallback(published.getItems());
+        }
+    }
+
+    private void saveToLocalCache(WishListSnapshot snapshot) {
+        if (localCache != null && uid != null) {
+            // the snapshot never changes, so the writer thread can use it as is
+            localCache.save(uid, snapshot.getItems());
+        }
+    }
+
+    // every change to myItems ends up here.  copy it into a new snapshot and swap it in with one
+    // assignment, so a reader sees either the old list or the new one and never half of each
+    private void notifyListObservers() {
+        WishListSnapshot snapshot = publishSnapshot();
+        saveToLocalCache(snapshot);
+        for (ListObserver observer : listObservers) {
+            observer.onListChanged(snapshot);
+        }
+    }
+
+    private WishListSnapshot publishSnapshot() {
+        WishListSnapshot snapshot = WishListSnapshot.of(published.getVersion() + 1, myItems,
+                itemIndex.drainChanges());
+        published = snapshot;
+        return snapshot;
+    }
+
+    private void refreshAfterWrite(FirestoreCallback firestoreCallback) {
+        if (wishListListener != null) {
+            // Firestore fires snapshot listeners for local writes right away, so by the time the
+            // write succeeds the change is already in myItems.  No need to read anything again.
+            firestoreCallback.onCallback(published.getItems());
+        }
+        else {
+            readData(firestoreCallback);
+        }
+    }
+
+    private void startListening(FirestoreCallback firestoreCallback) {
+        syncCallback = firestoreCallback;
+        if (wishListListener != null && uid.equals(listeningUid)) {
+            // already listening to this user's list, just hand back what we have
+            firestoreCallback.onCallback(published.getItems());
+            return;
+        }
+        if (wishListListener != null) {
+            // listening to a different user's list
+            stopListening();
+        }
+
+        // the first event delivers every document as ADDED, after that we only get the deltas.
+        // whatever came from the local cache stays on screen until that first event arrives
+        awaitingFirstSnapshot = true;
+        listeningUid = uid;
+        String snapshotUid = uid;
+        // the events arrive on snapshotExecutor (a background thread), one at a time in order
+        wishListListener = db().collection("users").document(uid).collection("myWishList")
+                // INCLUDE also tells us when a write we made reaches the server, so its item
+                // can stop showing as pending, and when we go offline or come back
+                .addSnapshotListener(snapshotExecutor, MetadataChanges.INCLUDE, new EventListener<QuerySnapshot>() {
                     @Override
-                    public void onFailure(@NonNull Exception e) {
-                        Log.i(TAG, "Error deleting document", e);
+                    public void onEvent(@Nullable QuerySnapshot snapshots,
+                                        @Nullable FirebaseFirestoreException e) {
+                        if (e != null) {
+                            Log.d(TAG, "Listen to myWishList failed", e);
+                            return;
+                        }
+                        // the slow part - building the WishListItems - happens here in the background
+                        long start = System.nanoTime();
+                        ArrayList<WishListItem> changed = new ArrayList<>();
+                        ArrayList<String> removedIds = new ArrayList<>();
+                        // without INCLUDE here the changes would leave out documents where only
+                        // the metadata changed, e.g. the server confirming a write we made.  then
+                        // the item would never stop showing as pending
+                        mapDocumentChanges(snapshots.getDocumentChanges(MetadataChanges.INCLUDE),
+                                changed, removedIds);
+                        metrics.trace("mapSnapshot", start, System.nanoTime() - start);
+                        // events for our own writes, or while offline, come from the device
+                        // and aren't reads from the server
+                        boolean fromCache = snapshots.getMetadata().isFromCache();
+                        if (!snapshots.getMetadata().hasPendingWrites() && !fromCache) {
+                            countReads(changed);
+                        }
+
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!snapshotUid.equals(listeningUid)) {
+                                    // we stopped listening to this user while it was being mapped
+                                    return;
+                                }
+                                if (fromCache != offline) {
+                                    offline = fromCache;
+                                    Log.i(TAG, offline ? "Offline, showing the list saved on the device"
+                                            : "Back online");
+                                }
+                                if (changed.isEmpty() && removedIds.isEmpty() && !awaitingFirstSnapshot) {
+                                    // nothing about any document changed
+                                    return;
+                                }
+                                if (awaitingFirstSnapshot) {
+                                    myItems.clear();
+                                    itemIndex.clear();
+                                    awaitingFirstSnapshot = false;
+                                }
+                                applyDocumentChanges(changed, removedIds);
+                                reapplyPendingMutations();
+                                publishList();
+                            }
+                        });
                     }
                 });
     }
 
-    public void updateUid(String uid) {
+    public void stopListening() {
+        if (wishListListener != null) {
+            wishListListener.remove();
+            wishListListener = null;
+        }
+        listeningUid = null;
+        offline = false;
+        // a read for the old user would put their items back
+        cancelReads();
+        pendingMutations.clear();
+        myItems.clear();
+        itemIndex.clear();
+        // so nobody keeps reading the old user's items.  not saved to the cache, the old
+        // user's file is still good
+        publishSnapshot();
+    }
 
+    // runs on the background thread, doesn't touch myItems
+    private void mapDocumentChanges(List<DocumentChange> changes, List<WishListItem> changed,
+                                    List<String> removedIds) {
+        for (DocumentChange change : changes) {
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                removedIds.add(change.getDocument().getId());
+            }
+            else {
+                WishListItem w = WishListItemMapper.fromSnapshot(change.getDocument());
+                w.setPendingSync(change.getDocument().getMetadata().hasPendingWrites());
+                changed.add(w);
+            }
+        }
+    }
+
+    // runs on the main thread
+    private void applyDocumentChanges(List<WishListItem> changed, List<String> removedIds) {
+        WishListMerge.applyChanges(myItems, itemIndex, changed, removedIds);
+        Log.i(TAG, "Applied " + (changed.size() + removedIds.size()) + " change(s) to myWishList");
     }
 
     /* https://www.youtube.com/watch?v=0ofkvm97i0s
@@ -232,41 +1395,580 @@ public class FirebaseHelper {
 
     private void readData(FirestoreCallback firestoreCallback) {
         // This is necessary to avoid the issues we have ran into with data displaying before we
-        // returned from the async get method
+        // returned from the async get method.  Everyone who asks while a read is already on its
+        // way shares that one read instead of starting another
+        if (uid == null) {
+            // signed out, there is nothing to read
+            firestoreCallback.onCallback(published.getItems());
+            return;
+        }
+        readShared().addOnCompleteListener(new OnCompleteListener<List<WishListItem>>() {
+            @Override
+            public void onComplete(@NonNull Task<List<WishListItem>> task) {
+                if (task.isSuccessful()) {
+                    firestoreCallback.onCallback(task.getResult());
+                }
+                else {
+                    // the read failed or was cancelled.  the caller still has to hear back (a
+                    // bulk call is waiting on this to report), so give them what we have
+                    Log.i(TAG, "Read didn't finish, answering with the list we have");
+                    firestoreCallback.onCallback(published.getItems());
+                }
+            }
+        });
+    }
 
-        // clear out the AL of data
-        myItems.clear();
-        db.collection("users").document(uid).collection("myWishList")
-                .get()
-                .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
+    /* Single-flight reads.  Signing in used to call attachReadDataToUser() three times, and every
+    call started its own full read that cleared and refilled myItems, so the reads tripped over
+    each other.  Now only one read runs at a time: asking again while it is running gets the same
+    Task.  A read can't be joined by a caller that needs newer data than it will bring back, that
+    is when a write has been confirmed since the read started, or the user changed.
+
+    readGeneration goes up every time a read starts or reads are cancelled.  A read whose
+    generation isn't the current one when it finishes is stale, and its result is thrown away
+    instead of overwriting newer data.
+     */
+    private Task<List<WishListItem>> readInFlight;
+    private String readInFlightUid;
+    private long readInFlightWrites;
+    private CancellationTokenSource readCancellation;
+    private long readGeneration = 0;
+    // how many batches Firestore has confirmed, so a read knows if it started before a write landed
+    private long writesCommitted = 0;
+
+    private Task<List<WishListItem>> readShared() {
+        if (readInFlight != null && uid.equals(readInFlightUid) && readInFlightWrites == writesCommitted) {
+            Log.i(TAG, "Joining the read that is already running");
+            return readInFlight;
+        }
+        readCancellation = new CancellationTokenSource();
+        SharedRead read = new SharedRead(++readGeneration, uid,
+                new TaskCompletionSource<List<WishListItem>>(readCancellation.getToken()));
+        readInFlight = read.result.getTask();
+        readInFlightUid = read.uid;
+        readInFlightWrites = writesCommitted;
+
+        if (offlineFirst) {
+            // whatever is on the device goes on screen right away, even with no connection, and
+            // the server read below replaces it when it answers
+            fetch(read, Source.CACHE);
+            fetch(read, Source.SERVER);
+        }
+        else {
+            fetch(read, Source.DEFAULT);
+        }
+        return readInFlight;
+    }
+
+    // one read that callers share, see readShared()
+    private static class SharedRead {
+        final long generation;
+        final String uid;
+        final TaskCompletionSource<List<WishListItem>> result;
+        // main thread only
+        boolean showingCache = false;
+        boolean serverAnswered = false;
+
+        SharedRead(long generation, String uid, TaskCompletionSource<List<WishListItem>> result) {
+            this.generation = generation;
+            this.uid = uid;
+            this.result = result;
+        }
+    }
+
+    private void fetch(SharedRead read, Source source) {
+        boolean fromDevice = source == Source.CACHE;
+        long start = System.nanoTime();
+        db().collection("users").document(read.uid).collection("myWishList")
+                .get(source)
+                // passing ioExecutor makes onComplete run on a background thread
+                .addOnCompleteListener(ioExecutor, new OnCompleteListener<QuerySnapshot>() {
                     @Override
                     public void onComplete(@NonNull Task<QuerySnapshot> task) {
-                        if (task.isSuccessful()){
-                            // iterate through ALL the items in the Query
-                            // each item is a DocumentSnapshot
-                            for (DocumentSnapshot doc: task.getResult())
-                            {
-                                // convert the snapshot into a WishListItem object
-                                WishListItem w = doc.toObject(WishListItem.class);
-                                myItems.add(w);
+                        if (!fromDevice) {
+                            metrics.record(WishListMetrics.Op.READ, start);
+                        }
+                        if (!task.isSuccessful()) {
+                            Log.d(TAG, "Error getting documents from " + source, task.getException());
+                            if (!fromDevice) {
+                                mainHandler.post(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        finishRead(read.generation);
+                                        if (read.showingCache) {
+                                            // offline, what the device had is the best we can do
+                                            read.result.trySetResult(published.getItems());
+                                        }
+                                        else {
+                                            read.result.trySetException(task.getException());
+                                        }
+                                    }
+                                });
                             }
-                            // I am done getting all the data
-                            Log.i(TAG, "Success reading all data: " + myItems.toString());
-                            firestoreCallback.onCallback(myItems);
+                            return;
                         }
-                        else
+                        ArrayList<WishListItem> fetched = new ArrayList<>(task.getResult().size());
+                        // iterate through ALL the items in the Query
+                        // each item is a DocumentSnapshot
+                        for (DocumentSnapshot doc: task.getResult())
                         {
-                            Log.d(TAG, "Error getting documents", task.getException());
+                            // convert the snapshot into a WishListItem object
+                            WishListItem w = WishListItemMapper.fromSnapshot(doc);
+                            w.setPendingSync(doc.getMetadata().hasPendingWrites());
+                            fetched.add(w);
+                        }
+                        if (!fromDevice) {
+                            countReads(fetched);
                         }
-                    }
 
+                        // back on the main thread to swap the new data in
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (read.generation != readGeneration || !read.uid.equals(uid)) {
+                                    // a newer read started or the user changed while this one
+                                    // was out, so this data may be older than what we have
+                                    Log.i(TAG, "Discarding a stale read");
+                                    if (!fromDevice) {
+                                        finishRead(read.generation);
+                                        // whoever joined it still gets an answer, just not this data
+                                        read.result.trySetResult(published.getItems());
+                                    }
+                                    return;
+                                }
+                                if (fromDevice && (read.serverAnswered || fetched.isEmpty())) {
+                                    // the server beat the device, or nothing is saved on it yet
+                                    return;
+                                }
+                                // clear out the AL of data now that the new data is here, so the list
+                                // is never shown empty while we wait on the network
+                                WishListMerge.replaceAll(myItems, itemIndex, fetched);
+                                reapplyPendingMutations();
+                                notifyListObservers();
+                                if (fromDevice) {
+                                    read.showingCache = true;
+                                    Log.i(TAG, "Showing " + myItems.size() + " item(s) from the device until the server answers");
+                                    return;
+                                }
+                                read.serverAnswered = true;
+                                // I am done getting all the data
+                                // just the count, printing every item is slow on a big list
+                                Log.i(TAG, "Success reading all data: " + myItems.size() + " item(s)");
+                                finishRead(read.generation);
+                                read.result.trySetResult(published.getItems());
+                            }
+                        });
+                    }
                 });
     }
 
-//https://stackoverflow.com/questions/48499310/how-to-return-a-documentsnapshot-as-a-result-of-a-method/48500679#48500679
-    public interface FirestoreCallback {
-        // we use the arraylist of the data type we are working with in firebase
-        void onCallback(ArrayList<WishListItem> myList);
+    private void finishRead(long generation) {
+        // only the newest read owns readInFlight, an older one finishing mustn't clear it
+        if (generation == readGeneration) {
+            readInFlight = null;
+            readInFlightUid = null;
+        }
+    }
+
+    /**
+     * Stops waiting for any read that is running.  Its result is thrown away when it arrives, and
+     * its callbacks are answered right away with the list as it is now.
+     */
+    public void cancelReads() {
+        readGeneration++;
+        if (readCancellation != null) {
+            readCancellation.cancel();
+            readCancellation = null;
+        }
+        readInFlight = null;
+        readInFlightUid = null;
+    }
+
+    /* Import and export.  Backing up or moving a list of thousands of items one at a time through
+    AddItemActivity isn't practical, so these copy the whole myWishList collection to or from a
+    WishListArchive file.  Neither one ever holds the whole list: export reads a page of
+    documents, writes it to the file and only then asks for the next page, and import reads just
+    enough of the file to fill one WriteBatch.  At most MAX_PARALLEL_BATCHES batches are being
+    sent at once, and the file isn't read any further until one of them finishes, so a slow
+    connection slows the import down instead of filling memory with batches.
+
+    Both run on their own thread, since they wait on Firestore in a loop.  An import started
+    offline waits there until the connection comes back.  The items reach myItems the normal
+    way, through the snapshot listener.
+     */
+    public static final int EXPORT_PAGE_SIZE = 500;
+
+    /**
+     * Copies the signed in user's whole list from the server into file.
+     *
+     * @param file      replaced by the archive
+     * @param callback  hears about progress after each page and once at the end
+     */
+    public void exportWishList(File file, TransferCallback callback) {
+        if (uid == null) {
+            callback.onComplete(0, new IllegalStateException("No one is signed in"));
+            return;
+        }
+        // by document id, so each page can start right after the last one
+        Query byId = db().collection("users").document(uid).collection("myWishList")
+                .orderBy(FieldPath.documentId())
+                .limit(EXPORT_PAGE_SIZE);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int exported = 0;
+                Exception error = null;
+                try (WishListArchive.Writer writer = WishListArchive.Writer.create(file)) {
+                    DocumentSnapshot last = null;
+                    while (true) {
+                        Query page = last == null ? byId : byId.startAfter(last);
+                        long start = System.nanoTime();
+                        // from the server, a backup of only what is on the device could be missing items
+                        QuerySnapshot snapshots = Tasks.await(page.get(Source.SERVER));
+                        metrics.record(WishListMetrics.Op.READ, start);
+                        ArrayList<WishListItem> items = new ArrayList<>(snapshots.size());
+                        for (DocumentSnapshot doc : snapshots) {
+                            WishListItem w = WishListItemMapper.fromSnapshot(doc);
+                            writer.write(w);
+                            items.add(w);
+                        }
+                        countReads(items);
+                        exported += items.size();
+                        postProgress(callback, exported);
+                        if (snapshots.size() < EXPORT_PAGE_SIZE) {
+                            break;
+                        }
+                        last = snapshots.getDocuments().get(snapshots.size() - 1);
+                    }
+                }
+                catch (IOException | ExecutionException e) {
+                    error = e;
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = e;
+                }
+                Log.i(TAG, "Exported " + exported + " item(s)", error);
+                postComplete(callback, exported, error);
+            }
+        }, "WishListExport").start();
+    }
+
+    /**
+     * Adds every item in an archive made by exportWishList to the signed in user's list.  Items
+     * with the same docID as one already on the list replace it.
+     *
+     * @param file      the archive to read
+     * @param callback  hears about progress after each batch and once at the end
+     */
+    public void importWishList(File file, TransferCallback callback) {
+        if (uid == null) {
+            callback.onComplete(0, new IllegalStateException("No one is signed in"));
+            return;
+        }
+        FirebaseFirestore firestore = db();
+        CollectionReference myWishList = firestore.collection("users").document(uid).collection("myWishList");
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Semaphore batchesInFlight = new Semaphore(MAX_PARALLEL_BATCHES);
+                AtomicInteger imported = new AtomicInteger();
+                AtomicReference<Exception> failure = new AtomicReference<>();
+                try (WishListArchive.Reader reader = WishListArchive.Reader.open(file)) {
+                    // document -> its fields, kept instead of a WriteBatch because a retry needs
+                    // a new batch.  making the references here still turns away bad docIDs
+                    LinkedHashMap<DocumentReference, Map<String, Object>> batch = new LinkedHashMap<>();
+                    int inBatch = 0;
+                    long bytes = 0;
+                    WishListItem w;
+                    while (failure.get() == null && (w = reader.next()) != null) {
+                        if (isUnsavedDocId(w.getDocID())) {
+                            w.setDocID(myWishList.document().getId());
+                        }
+                        batch.put(myWishList.document(w.getDocID()), WishListItemMapper.toMap(w));
+                        bytes += WishListItemMapper.estimateSize(w, WishListItemMapper.MASK_ALL);
+                        if (++inBatch == MAX_BATCH_SIZE) {
+                            commitImportBatch(firestore, batch, inBatch, bytes, batchesInFlight, imported, failure, callback);
+                            batch = new LinkedHashMap<>();
+                            inBatch = 0;
+                            bytes = 0;
+                        }
+                    }
+                    if (inBatch > 0 && failure.get() == null) {
+                        commitImportBatch(firestore, batch, inBatch, bytes, batchesInFlight, imported, failure, callback);
+                    }
+                    // wait for the last batches to finish
+                    batchesInFlight.acquire(MAX_PARALLEL_BATCHES);
+                }
+                catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure.compareAndSet(null, e);
+                }
+                catch (RuntimeException e) {
+                    // e.g. Firestore refusing a docID.  on this thread it would kill the app
+                    failure.compareAndSet(null, e);
+                }
+                Log.i(TAG, "Imported " + imported.get() + " item(s)", failure.get());
+                postComplete(callback, imported.get(), failure.get());
+            }
+        }, "WishListImport").start();
+    }
+
+    // runs on the import thread.  blocks while MAX_PARALLEL_BATCHES batches are already out
+    private void commitImportBatch(FirebaseFirestore firestore, Map<DocumentReference, Map<String, Object>> writes,
+                                   int size, long bytes, Semaphore batchesInFlight,
+                                   AtomicInteger imported, AtomicReference<Exception> failure,
+                                   TransferCallback callback) throws InterruptedException {
+        batchesInFlight.acquire();
+        long start = System.nanoTime();
+        // set() with the docID from the archive is safe to send twice, so it goes through the
+        // retries and the circuit breaker like every other write.  RetryingCall lives on the
+        // main thread
+        RetryingCall<Void> call = new RetryingCall<>("import", new TaskFactory<Void>() {
+            @Override
+            public Task<Void> start() {
+                WriteBatch batch = firestore.batch();
+                for (Map.Entry<DocumentReference, Map<String, Object>> write : writes.entrySet()) {
+                    batch.set(write.getKey(), write.getValue());
+                }
+                return batch.commit();
+            }
+        }, new OnCompleteListener<Void>() {
+            @Override
+            public void onComplete(@NonNull Task<Void> task) {
+                metrics.record(WishListMetrics.Op.ADD, start);
+                if (task.isSuccessful()) {
+                    metrics.countWrites(size, bytes);
+                    postProgress(callback, imported.addAndGet(size));
+                }
+                else {
+                    // stop reading the file, the batches already sent stay saved
+                    failure.compareAndSet(null, task.getException());
+                }
+                batchesInFlight.release();
+            }
+        });
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                call.startWhenAllowed();
+            }
+        });
+    }
+
+    private void postProgress(TransferCallback callback, int items) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onProgress(items);
+            }
+        });
+    }
+
+    private void postComplete(TransferCallback callback, int items, Exception error) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onComplete(items, error);
+            }
+        });
+    }
+
+    /* Retries.  Before, a failed write was logged and dropped while the screen had already said
+    "Data updated".  Now every write goes through a RetryingCall:
+     - errors that may go away on their own (no connection, server busy, timed out) are retried
+       with growing, randomized waits, see RetryPolicy
+     - errors that won't (permission denied, bad data) are not retried
+     - the caller waits at most the policy's deadline.  after that it is told the write is still
+       pending, and the retries keep going in the background
+     - the circuit breaker counts the transient failures (not slow calls, not permanent
+       errors).  when Firestore keeps failing it opens, and flushes and bulk writes leave the
+       writes in the write buffer instead of sending them, see flushPendingWrites.  the other
+       calls (adding the user, importing) wait for it in RetryingCall.startWhenAllowed
+     - a write that fails for good is undone on screen and reported to WriteFailureListeners
+     */
+
+    /**
+     * @param retryPolicy   how to retry writes from now on, RetryPolicy.NO_RETRIES to never retry
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * @param listener  told on the main thread when writes fail for good and are undone
+     */
+    public void addWriteFailureListener(WriteFailureListener listener) {
+        writeFailureListeners.add(listener);
+    }
+
+    public void removeWriteFailureListener(WriteFailureListener listener) {
+        writeFailureListeners.remove(listener);
+    }
+
+    private void notifyWriteFailed(List<WishListItem> items, Exception e) {
+        for (WriteFailureListener listener : new ArrayList<>(writeFailureListeners)) {
+            listener.onWriteFailed(items, e);
+        }
+    }
+
+    // errors worth trying again, everything else will fail the same way every time
+    private static boolean isTransient(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            return false;
+        }
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case UNAVAILABLE:
+            case DEADLINE_EXCEEDED:
+            case RESOURCE_EXHAUSTED:
+            case ABORTED:
+            case INTERNAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private interface TaskFactory<T> {
+        // starts a new try, a Task can only be used once
+        Task<T> start();
+    }
+
+    // one Firestore call, retried by retryPolicy.  everything here runs on the main thread
+    private class RetryingCall<T> {
+        private final String name;
+        private final TaskFactory<T> factory;
+        private final OnCompleteListener<T> done;
+        private final RetryPolicy policy = retryPolicy;
+        private int attempts = 0;
+        private boolean finished = false;
+        private Runnable deadline;
+
+        RetryingCall(String name, TaskFactory<T> factory, OnCompleteListener<T> done) {
+            this.name = name;
+            this.factory = factory;
+            this.done = done;
+        }
+
+        /**
+         * @param onDeadline    run once if the call hasn't finished by the policy's deadline.
+         *                      done is still called when it does finish
+         */
+        void setOnDeadline(Runnable onDeadline) {
+            deadline = new Runnable() {
+                @Override
+                public void run() {
+                    if (!finished) {
+                        // slow isn't broken.  counting this as a failure would open the breaker
+                        // and keep later writes in memory instead of in Firestore's queue on the
+                        // device.  it doesn't hold up the next trial either
+                        circuitBreaker.onNeutral();
+                        onDeadline.run();
+                    }
+                }
+            };
+        }
+
+        void start() {
+            if (deadline != null) {
+                mainHandler.postDelayed(deadline, policy.getDeadlineMs());
+            }
+            attempt();
+        }
+
+        /**
+         * start() for calls that don't come through flushPendingWrites or writeInBatches, which
+         * ask the circuit breaker themselves.  While the breaker is open the first try waits
+         * until it lets a request through.
+         */
+        void startWhenAllowed() {
+            if (offline || circuitBreaker.allowRequest()) {
+                start();
+                return;
+            }
+            // at least a flush delay, a trial that is already out says 0 until it reports back
+            long waitMs = Math.max(circuitBreaker.millisUntilRetry(), DEFAULT_FLUSH_DELAY_MS);
+            Log.i(TAG, "Firestore is failing, holding " + name + " for " + waitMs + " ms");
+            mainHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    startWhenAllowed();
+                }
+            }, waitMs);
+        }
+
+        private void attempt() {
+            attempts++;
+            factory.start().addOnCompleteListener(new OnCompleteListener<T>() {
+                @Override
+                public void onComplete(@NonNull Task<T> task) {
+                    if (task.isSuccessful()) {
+                        circuitBreaker.onSuccess();
+                        finish(task);
+                        return;
+                    }
+                    Exception e = task.getException();
+                    if (!isTransient(e)) {
+                        // e.g. permission denied.  retrying won't help, and it isn't Firestore
+                        // being down either
+                        circuitBreaker.onNeutral();
+                        finish(task);
+                        return;
+                    }
+                    circuitBreaker.onFailure();
+                    if (!policy.canRetry(attempts)) {
+                        Log.i(TAG, name + " gave up after " + attempts + " tries", e);
+                        finish(task);
+                        return;
+                    }
+                    // if the breaker is open, wait until it would let a request through anyway
+                    long waitMs = Math.max(policy.backoffMs(attempts, retryRandom),
+                            circuitBreaker.millisUntilRetry());
+                    Log.i(TAG, name + " failed (" + e.getMessage() + "), try " + (attempts + 1)
+                            + " in " + waitMs + " ms");
+                    mainHandler.postDelayed(new Runnable() {
+                        @Override
+                        public void run() {
+                            attempt();
+                        }
+                    }, waitMs);
+                }
+            });
+        }
+
+        private void finish(Task<T> task) {
+            finished = true;
+            if (deadline != null) {
+                mainHandler.removeCallbacks(deadline);
+            }
+            done.onComplete(task);
+        }
+    }
+
+    // FirestoreCallback and ListObserver are declared in WishListRepository
+    public interface BulkCallback {
+        // called once when every batch of a bulk call has finished
+        void onComplete(int succeeded, int failed);
+    }
+
+    public interface WriteFailureListener {
+        // items are back the way they were before the failed change, unless the user has
+        // changed since and they aren't on the screen anymore
+        void onWriteFailed(List<WishListItem> items, Exception e);
+    }
+
+    public interface TransferCallback {
+        // called on the main thread with how many items have been copied so far
+        void onProgress(int items);
+        // called once on the main thread at the end.  error is null if everything was copied
+        void onComplete(int items, @Nullable Exception error);
     }
 }
 
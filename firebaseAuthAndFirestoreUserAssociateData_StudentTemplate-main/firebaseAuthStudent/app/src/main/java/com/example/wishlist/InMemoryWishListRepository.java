@@ -0,0 +1,163 @@
+package com.example.wishlist;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A WishListRepository that keeps every user's list in memory and never touches the network.
+ * Nothing is saved when the app closes.  It is meant for tests and for timing the add / edit /
+ * delete / read flows on a plain JVM, so it is kept as cheap as possible:
+ *
+ *  - each list is a LinkedHashMap by docID, so edits and deletes don't search the list
+ *  - a new snapshot is only copied when someone asks for one (getSnapshot / observers), so a
+ *    burst of writes with nobody watching doesn't copy the list after every write
+ *
+ * Like FirebaseHelper it stores its own copy of every item it is given, so changing an item after
+ * handing it over never changes a snapshot that was already published.
+ *
+ * Safe to use from any thread.  Observers and callbacks are called right away on the thread that
+ * made the change, but after the lock is released, so they can call back into the repository or
+ * wait on another thread that does.  When several threads write at once an observer can get the
+ * snapshots out of order, check isNewerThan() if that matters.
+ */
+public class InMemoryWishListRepository implements WishListRepository {
+    // uid -> that user's items by docID, in the order they were added
+    private final HashMap<String, LinkedHashMap<String, WishListItem>> lists = new HashMap<>();
+    private final ArrayList<ListObserver> listObservers = new ArrayList<>();
+    private LinkedHashMap<String, WishListItem> items = new LinkedHashMap<>();
+    private String uid;
+
+    // goes up on every change.  published is only rebuilt when its version is behind this
+    private long version = 0;
+    private WishListSnapshot published = WishListSnapshot.EMPTY;
+
+    @Override
+    public void updateUid(String uid) {
+        WishListSnapshot snapshot;
+        synchronized (this) {
+            this.uid = uid;
+            if (uid == null) {
+                items = new LinkedHashMap<>();
+            }
+            else {
+                items = lists.get(uid);
+                if (items == null) {
+                    items = new LinkedHashMap<>();
+                    lists.put(uid, items);
+                }
+            }
+            snapshot = changed();
+        }
+        notifyListObservers(snapshot);
+    }
+
+    @Override
+    public void attachReadDataToUser(FirestoreCallback firestoreCallback) {
+        firestoreCallback.onCallback(getSnapshot().getItems());
+    }
+
+    @Override
+    public void addData(WishListItem w) {
+        WishListSnapshot snapshot;
+        synchronized (this) {
+            if (uid == null) {
+                return;
+            }
+            if (w.getDocID() == null || w.getDocID().equals(WishListItem.NO_DOC_ID)) {
+                // same as Firestore's document(), a random id made on the device
+                w.setDocID(UUID.randomUUID().toString());
+            }
+            items.put(w.getDocID(), saved(w));
+            snapshot = changed();
+        }
+        notifyListObservers(snapshot);
+    }
+
+    @Override
+    public void editData(WishListItem w) {
+        WishListSnapshot snapshot;
+        synchronized (this) {
+            if (!items.containsKey(w.getDocID())) {
+                return;
+            }
+            items.put(w.getDocID(), saved(w));
+            snapshot = changed();
+        }
+        notifyListObservers(snapshot);
+    }
+
+    @Override
+    public void deleteData(WishListItem w) {
+        WishListSnapshot snapshot;
+        synchronized (this) {
+            if (items.remove(w.getDocID()) == null) {
+                return;
+            }
+            snapshot = changed();
+        }
+        notifyListObservers(snapshot);
+    }
+
+    @Override
+    public void flushPendingWrites() {
+        // every write is already "saved"
+    }
+
+    @Override
+    public synchronized List<WishListItem> getWishListItems() {
+        return getSnapshot().getItems();
+    }
+
+    @Override
+    public synchronized WishListSnapshot getSnapshot() {
+        if (published.getVersion() != version) {
+            published = WishListSnapshot.of(version, new ArrayList<>(items.values()));
+        }
+        return published;
+    }
+
+    @Override
+    public synchronized void addListObserver(ListObserver observer) {
+        listObservers.add(observer);
+    }
+
+    @Override
+    public synchronized void removeListObserver(ListObserver observer) {
+        listObservers.remove(observer);
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+
+    // the copy we keep.  it is saved as soon as it is stored, so nothing is left to send
+    private static WishListItem saved(WishListItem w) {
+        WishListItem copy = w.copy();
+        copy.clearDirtyFields();
+        return copy;
+    }
+
+    // call with the lock held.  returns the snapshot to hand to the observers, or null if
+    // nobody is watching
+    private WishListSnapshot changed() {
+        version++;
+        return listObservers.isEmpty() ? null : getSnapshot();
+    }
+
+    // call without the lock held
+    private void notifyListObservers(WishListSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        ArrayList<ListObserver> observers;
+        synchronized (this) {
+            observers = new ArrayList<>(listObservers);
+        }
+        for (ListObserver observer : observers) {
+            observer.onListChanged(snapshot);
+        }
+    }
+}
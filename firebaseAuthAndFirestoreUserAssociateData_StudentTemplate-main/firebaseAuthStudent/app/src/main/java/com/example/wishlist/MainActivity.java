@@ -5,8 +5,10 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
@@ -27,20 +29,21 @@ public class MainActivity extends AppCompatActivity {
     private TextView signUpResultTextView;
     private Button signInButton, signUpButton, signOutButton, showListButton, addItemButton;
 
-    // create public static FirebaseHelper variable
-    // this variable is accessible in all other activities by MainActivity.firebaseHelper
+    // the FirebaseHelper lives in WishListApplication so there is only one per process.
+    // any activity can get it with WishListApplication.getFirebaseHelper()
     // this will allow us to access auth and firestore anywhere we need it
-
-    public static FirebaseHelper firebaseHelper;
+    private FirebaseHelper firebaseHelper;
 
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long createUptime = SystemClock.uptimeMillis();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        reportFirstFrame(createUptime);
 
-        // instantiate FirebaseHelper var
-        firebaseHelper = new FirebaseHelper();
+        // the same helper every time, it is only made the first time any screen asks for it
+        firebaseHelper = WishListApplication.getFirebaseHelper();
 
         // Make references to xml elements
         nameET = findViewById(R.id.nameTV);
@@ -57,6 +60,20 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    private void reportFirstFrame(long createUptime) {
+        // onPreDraw runs right before the first frame is drawn, that is when the user sees
+        // something, so that is where the startup time stops
+        View content = findViewById(android.R.id.content);
+        content.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                content.getViewTreeObserver().removeOnPreDrawListener(this);
+                ((WishListApplication) getApplication()).onFirstFrame(createUptime);
+                return true;
+            }
+        });
+    }
+
     @Override
     public void onStart() {
         super.onStart();
@@ -64,6 +81,12 @@ public class MainActivity extends AppCompatActivity {
         updateIfLoggedIn();
     }
 
+    @Override
+    public void onStop() {
+        super.onStop();
+        firebaseHelper.getMetrics().export();
+    }
+
     public void updateIfLoggedIn(){
         // Create reference to current user using firebaseHelper variable
          FirebaseUser user = firebaseHelper.getmAuth().getCurrentUser();
@@ -75,7 +98,6 @@ public class MainActivity extends AppCompatActivity {
             showListButton.setVisibility(View.VISIBLE);
             addItemButton.setVisibility(View.VISIBLE);
             signUpResultTextView.setText(user.getEmail() + " is signed in");
-            firebaseHelper.attachReadDataToUser();
         }
         else {
             signInButton.setVisibility(View.VISIBLE);
@@ -111,21 +133,19 @@ public class MainActivity extends AppCompatActivity {
         else {
 
             // code to sign in user
+            long authStart = System.nanoTime();
             firebaseHelper.getmAuth().signInWithEmailAndPassword(email, password)
                     .addOnCompleteListener(this, new OnCompleteListener<AuthResult>() {
                         @Override
                         public void onComplete(@NonNull Task<AuthResult> task) {
+                            firebaseHelper.getMetrics().record(WishListMetrics.Op.AUTH, authStart);
                             if (task.isSuccessful())
                             {
-                                // updating MY var for the UID of current user
-                                firebaseHelper.updateUid(firebaseHelper.getmAuth().getCurrentUser().getUid());
                                 Log.i(TAG, email + " is signed in");
 
-                                // this will help us with the asych method calls
-                                firebaseHelper.attachReadDataToUser();
-
-                                // lets further investigate why this method call is needed
-                                firebaseHelper.attachReadDataToUser();
+                                // the session manager would hear about this from FirebaseAuth soon,
+                                // but this way the list starts loading before we change screens
+                                WishListApplication.getSessionManager().sync();
 
                                 // we can do any other UI updating or change screens based on how our app
                                 // should respond
@@ -171,24 +191,24 @@ public class MainActivity extends AppCompatActivity {
         }
         else {
             // code to sign up user
+        long authStart = System.nanoTime();
         firebaseHelper.getmAuth().createUserWithEmailAndPassword(email, password)
             .addOnCompleteListener(this, new OnCompleteListener<AuthResult>() {
                 @Override
                 public void onComplete(@NonNull Task<AuthResult> task) {
+                    firebaseHelper.getMetrics().record(WishListMetrics.Op.AUTH, authStart);
                     if (task.isSuccessful()){
                         // user account was created in firebase auth
                         Log.i(TAG, email + "account created");
                         FirebaseUser user = firebaseHelper.getmAuth().getCurrentUser();
 
-                        //update the firebaseHelper variable UID to equal the UID of the currently signed in user
-                        firebaseHelper.updateUid(user.getUid());
+                        // switch FirebaseHelper over to the new user (and start loading their
+                        // list) before we change screens
+                        WishListApplication.getSessionManager().sync();
 
                         // add a document to our database to represent this user
                         firebaseHelper.addUserToFirestore(name, user.getUid());
 
-                        // lets further investigate why this method call is needed
-                        firebaseHelper.attachReadDataToUser();
-
                         // choose whatever actions you want - update UI, switch to new screen, etc.
                         // ex: take the user to the screen where they can enter wishlist items
                         // getApplicationContext() will get the Activity we are currently in, that is sending
@@ -219,8 +239,8 @@ public class MainActivity extends AppCompatActivity {
         // firebaseHelper code to sign out
         // do I need getInstance()
 
-        firebaseHelper.getmAuth().signOut();
-        firebaseHelper.updateUid(null); // no " " used on null
+        // sends any writes still waiting before signing out, then clears the old user's list
+        WishListApplication.getSessionManager().signOut();
         Log.i(TAG, "user logged out");
         
         nameET.setText("");
@@ -0,0 +1,51 @@
+package com.example.wishlist;
+
+import java.util.UUID;
+
+/**
+ * A change that has already been applied to the local list in FirebaseHelper but that Firestore
+ * has not confirmed yet.  FirebaseHelper keeps these in order so it can put them back on top of
+ * fresh data from the server, and so it can undo them if the write fails.
+ */
+public class PendingMutation {
+    public enum Type { ADD, EDIT, DELETE }
+
+    private final String mutationId;
+    private final Type type;
+    private final WishListItem item;        // the item the way the user wants it to be
+    private final WishListItem previous;    // what was in the list before (null for an ADD)
+    private final int previousIndex;        // where previous was, so a failed delete goes back in place
+
+    public PendingMutation(Type type, WishListItem item, WishListItem previous, int previousIndex) {
+        // generated on the device so we can track the change before Firestore knows about it
+        this.mutationId = UUID.randomUUID().toString();
+        this.type = type;
+        this.item = item;
+        this.previous = previous;
+        this.previousIndex = previousIndex;
+    }
+
+    public String getMutationId() {
+        return mutationId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public WishListItem getItem() {
+        return item;
+    }
+
+    public WishListItem getPrevious() {
+        return previous;
+    }
+
+    public int getPreviousIndex() {
+        return previousIndex;
+    }
+
+    public String toString() {
+        return type + " " + item.getItemName() + " (" + mutationId + ")";
+    }
+}
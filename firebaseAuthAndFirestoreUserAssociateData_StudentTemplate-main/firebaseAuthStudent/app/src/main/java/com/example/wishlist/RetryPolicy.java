@@ -0,0 +1,77 @@
+package com.example.wishlist;
+
+import java.util.Random;
+
+/**
+ * How FirebaseHelper retries a Firestore call that failed for a reason that may go away on its
+ * own (no connection, the server is busy).  Each wait is about twice as long as the one before, up
+ * to maxBackoffMs, and is randomly somewhere between half and all of that.  The randomness keeps
+ * many phones that failed at the same moment from all retrying at the same moment too.
+ *
+ * The deadline is how long a caller is kept waiting.  Once it passes the caller is told the write
+ * is still pending, but the retries carry on in the background until maxAttempts is used up.
+ */
+public class RetryPolicy {
+    public static final RetryPolicy DEFAULT = new RetryPolicy(5, 200, 5000, 10000);
+    // try once, never retry
+    public static final RetryPolicy NO_RETRIES = new RetryPolicy(1, 0, 0, 10000);
+
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long deadlineMs;
+
+    /**
+     * @param maxAttempts       how many times to try in all, including the first
+     * @param initialBackoffMs  about how long to wait before the first retry
+     * @param maxBackoffMs      the longest wait between two tries
+     * @param deadlineMs        how long the caller waits for an answer
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMs, long maxBackoffMs, long deadlineMs) {
+        if (maxAttempts < 1 || initialBackoffMs < 0 || maxBackoffMs < initialBackoffMs || deadlineMs <= 0) {
+            throw new IllegalArgumentException("Bad retry policy");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.deadlineMs = deadlineMs;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    /**
+     * @param attempts  how many tries have been made so far
+     * @return  true if another try is allowed
+     */
+    public boolean canRetry(int attempts) {
+        return attempts < maxAttempts;
+    }
+
+    /**
+     * @param attempts  how many tries have been made so far, at least 1
+     * @return  how long to wait before the next try
+     */
+    public long backoffMs(int attempts, Random random) {
+        // initial, 2x, 4x ... without overflowing the shift
+        int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+        long cap = Math.min(maxBackoffMs, initialBackoffMs << doublings);
+        long half = cap / 2;
+        return half + (long) (random.nextDouble() * (cap - half + 1));
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+                "maxAttempts=" + maxAttempts +
+                ", initialBackoffMs=" + initialBackoffMs +
+                ", maxBackoffMs=" + maxBackoffMs +
+                ", deadlineMs=" + deadlineMs +
+                '}';
+    }
+}
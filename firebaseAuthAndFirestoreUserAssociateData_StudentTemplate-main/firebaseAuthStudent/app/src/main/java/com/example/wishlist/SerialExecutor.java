@@ -0,0 +1,44 @@
+package com.example.wishlist;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks one after another, in the order they were given, on top of another Executor.
+ * Snapshot events have to be handled in order (an old snapshot must never be applied after a
+ * newer one), but we still want them off the main thread and sharing the helper's thread pool.
+ */
+public class SerialExecutor implements Executor {
+    private final Executor executor;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private Runnable active;
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public synchronized void execute(Runnable r) {
+        tasks.add(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    r.run();
+                }
+                finally {
+                    scheduleNext();
+                }
+            }
+        });
+        if (active == null) {
+            scheduleNext();
+        }
+    }
+
+    private synchronized void scheduleNext() {
+        active = tasks.poll();
+        if (active != null) {
+            executor.execute(active);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.wishlist;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.auth.FirebaseAuth;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The one place that knows who is signed in.  It listens to FirebaseAuth, and whenever the user
+ * changes it tells FirebaseHelper (updateUid) and starts reading the new user's list right away,
+ * so the list is usually loaded by the time the next screen opens.  Screens don't have to call
+ * updateUid or attachReadDataToUser themselves anymore.
+ *
+ * It also remembers the lists of the last few accounts used on this device (in memory only, it is
+ * gone when the app closes).  Switching back to one of them shows its list straight away while
+ * Firestore catches up.
+ *
+ * Main thread only.
+ */
+public class SessionManager implements FirebaseAuth.AuthStateListener {
+    private static final String TAG = "Denna";
+    public static final int DEFAULT_WARM_ACCOUNTS = 3;
+
+    private final FirebaseAuth mAuth;
+    private final FirebaseHelper firebaseHelper;
+    private final ArrayList<SessionListener> sessionListeners = new ArrayList<>();
+    // uid -> that account's list when it was last signed in, least recently used first
+    private final LinkedHashMap<String, List<WishListItem>> warmLists;
+    private String uid;
+
+    public SessionManager(FirebaseAuth mAuth, FirebaseHelper firebaseHelper) {
+        this(mAuth, firebaseHelper, DEFAULT_WARM_ACCOUNTS);
+    }
+
+    /**
+     * @param warmAccounts  how many accounts' lists to keep in memory, 0 for none
+     */
+    public SessionManager(FirebaseAuth mAuth, FirebaseHelper firebaseHelper, final int warmAccounts) {
+        this.mAuth = mAuth;
+        this.firebaseHelper = firebaseHelper;
+        warmLists = new LinkedHashMap<String, List<WishListItem>>(warmAccounts + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<WishListItem>> eldest) {
+                return size() > warmAccounts;
+            }
+        };
+    }
+
+    /**
+     * Picks up whoever is already signed in (Firebase remembers them between launches) and starts
+     * listening for changes.
+     */
+    public void start() {
+        sync();
+        mAuth.addAuthStateListener(this);
+    }
+
+    public void stop() {
+        mAuth.removeAuthStateListener(this);
+    }
+
+    @Override
+    public void onAuthStateChanged(@NonNull FirebaseAuth firebaseAuth) {
+        sync();
+    }
+
+    /**
+     * Catches up with FirebaseAuth now instead of waiting for its listener.  Does nothing if the
+     * user hasn't changed, so it is safe to call right after a sign in succeeds.
+     */
+    public void sync() {
+        String newUid = mAuth.getUid();
+        if (newUid == null ? uid == null : newUid.equals(uid)) {
+            return;
+        }
+        if (uid != null) {
+            // keep what the last account had, updateUid is about to clear it
+            warmLists.put(uid, firebaseHelper.getSnapshot().getItems());
+        }
+        Log.i(TAG, "Session changed to " + (newUid == null ? "no one" : newUid));
+        uid = newUid;
+        firebaseHelper.updateUid(newUid);
+        if (newUid != null) {
+            List<WishListItem> warm = warmLists.get(newUid);
+            if (warm != null) {
+                firebaseHelper.preload(warm);
+            }
+            // start reading now, before any screen asks for the list
+            firebaseHelper.attachReadDataToUser();
+        }
+        for (SessionListener listener : new ArrayList<>(sessionListeners)) {
+            listener.onSessionChanged(newUid);
+        }
+    }
+
+    /**
+     * Sends anything still waiting to be written while we are still allowed to, then signs out.
+     */
+    public void signOut() {
+        firebaseHelper.flushPendingWrites();
+        mAuth.signOut();
+        sync();
+    }
+
+    /**
+     * @return  the signed in user's uid, or null
+     */
+    public String getUid() {
+        return uid;
+    }
+
+    public boolean isSignedIn() {
+        return uid != null;
+    }
+
+    public void addSessionListener(SessionListener listener) {
+        sessionListeners.add(listener);
+    }
+
+    public void removeSessionListener(SessionListener listener) {
+        sessionListeners.remove(listener);
+    }
+
+    public interface SessionListener {
+        // uid is null when no one is signed in anymore
+        void onSessionChanged(String uid);
+    }
+}
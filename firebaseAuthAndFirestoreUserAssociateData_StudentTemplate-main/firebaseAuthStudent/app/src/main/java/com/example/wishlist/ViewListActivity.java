@@ -1,54 +1,102 @@
 package com.example.wishlist;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
-import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
-import android.widget.ListView;
-import android.widget.TextView;
 
-import java.util.ArrayList;
+import java.util.List;
 
 public class ViewListActivity extends AppCompatActivity {
 
-    private ArrayList<WishListItem> myList;
     private static final String TAG = "Denna";
+    private WishListPager pager;
+    private WishListAdapter listAdapter;
+    private FirebaseHelper.ListObserver listObserver;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_view_list);
 
-        // get list of data from firebasehelper
-        myList = MainActivity.firebaseHelper.getWishListItems();
-        Intent intent = getIntent();
+        // get a pager from firebasehelper.  instead of the whole list it reads a page at a time
+        // as the user scrolls, and only keeps the pages near the screen in memory
+        pager = WishListApplication.getFirebaseHelper().getPager(WishListPager.DEFAULT_PAGE_SIZE);
+        if (pager == null) {
+            // signed out while this screen was starting, there is no list to show
+            Log.i(TAG, "No one is signed in, closing the list");
+            finish();
+            return;
+        }
+        // The adapter is what will take the data from the list and feed it to the RecyclerView.
+        // it only redraws the rows that actually changed each time we give it a new list
+        listAdapter = new WishListAdapter();
 
-        // The ArrayAdapter is what will take the data from the ArrayList and feed it to the ListView
-        ArrayAdapter<WishListItem> listAdapter = new ArrayAdapter<>(
-                this, android.R.layout.simple_list_item_1, myList);
+        // This finds the RecyclerView and then adds the adapter to bind the data to this view
+        RecyclerView recyclerView = findViewById(R.id.myWishList);
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        recyclerView.setAdapter(listAdapter);
 
-        // This finds the listView and then adds the adapter to bind the data to this view
-        ListView listView = (ListView) findViewById(R.id.myWishList);
-        listView.setAdapter(listAdapter);
+        pager.setPageListener(new WishListPager.PageListener() {
+            @Override
+            public void onWindowChanged(List<WishListItem> window, int addedAtTop, int removedFromTop) {
+                // the RecyclerView keeps the rows on screen still when rows above them are added
+                // or dropped, so we just hand over the new list
+                listAdapter.submitList(window);
+            }
+        });
+
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // the pager decides if either end is close enough to load the next page
+                int first = layoutManager.findFirstVisibleItemPosition();
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (first != RecyclerView.NO_POSITION) {
+                    pager.onItemVisible(first);
+                    pager.onItemVisible(last);
+                }
+            }
+        });
+        // show the first page out of what FirebaseHelper already has (from the local cache or the
+        // listener) so the screen isn't empty while the real first page loads
+        pager.showPreview(WishListApplication.getFirebaseHelper().getWishListItems());
+        pager.loadFirstPage();
+
+        // when FirebaseHelper's list changes (an edit or delete from this or another device)
+        // update the rows we are showing without reading the pages again
+        listObserver = new FirebaseHelper.ListObserver() {
+            @Override
+            public void onListChanged(WishListSnapshot snapshot) {
+                pager.applyLatest(snapshot);
+            }
+        };
+        WishListApplication.getFirebaseHelper().addListObserver(listObserver);
 
         // Create listener to listen for when an item from the wish list is clicked on
-        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        listAdapter.setOnItemClickListener(new WishListAdapter.OnItemClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int i, long l) {
+            public void onItemClick(WishListItem w) {
                 // Creates an intent to go from the full wish list to edit or delete one item
-                // i refers to the index in the arraylist of the WishListItem that was selected
                 Intent intent = new Intent(ViewListActivity.this, EditItemActivity.class);
 
-                // Sends the specific object at index i to the Edit activity
-                // In this case, it is sending the particular (SINGULAR) WishListItem object
-                intent.putExtra("ITEM_TO_EDIT", myList.get(i));
+                // Hands the WishListItem that was tapped to the Edit activity.  The item itself
+                // waits in the item store, the intent only carries its docID
+                intent.putExtra(EditItemActivity.EXTRA_DOC_ID,
+                        WishListApplication.getItemStore().put(w));
                 startActivity(intent);
 
             }
         });
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        WishListApplication.getFirebaseHelper().removeListObserver(listObserver);
+    }
 }
@@ -0,0 +1,125 @@
+package com.example.wishlist;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Feeds WishListItems to the RecyclerView in ViewListActivity.  ListAdapter works out what
+ * changed between the old and new list on a background thread (it uses an AsyncListDiffer), so
+ * when one item changes only that one row is redrawn instead of the whole list.
+ */
+public class WishListAdapter extends ListAdapter<WishListItem, WishListAdapter.ItemViewHolder> {
+    // rows Firestore hasn't confirmed yet are drawn faded
+    private static final float PENDING_SYNC_ALPHA = 0.5f;
+
+    // RecyclerView wants a long id for every row, docIDs are Strings, so we hand out numbers
+    // the first time we see each docID and keep using the same one while it is in the list
+    private final HashMap<String, Long> stableIds = new HashMap<>();
+    private long nextStableId = 0;
+    private OnItemClickListener onItemClickListener;
+
+    public WishListAdapter() {
+        super(new WishListDiffCallback());
+        setHasStableIds(true);
+    }
+
+    public void setOnItemClickListener(OnItemClickListener onItemClickListener) {
+        this.onItemClickListener = onItemClickListener;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String docID = getItem(position).getDocID();
+        Long id = stableIds.get(docID);
+        if (id == null) {
+            id = nextStableId++;
+            stableIds.put(docID, id);
+        }
+        return id;
+    }
+
+    @Override
+    public void onCurrentListChanged(@NonNull List<WishListItem> previousList,
+                                     @NonNull List<WishListItem> currentList) {
+        // forget the ids of items that left the list, or the map would only ever grow
+        HashSet<String> current = new HashSet<>();
+        for (WishListItem w : currentList) {
+            current.add(w.getDocID());
+        }
+        stableIds.keySet().retainAll(current);
+    }
+
+    @NonNull
+    @Override
+    public ItemViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View row = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.wish_list_row, parent, false);
+        return new ItemViewHolder(row);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ItemViewHolder holder, int position) {
+        WishListItem w = getItem(position);
+        holder.nameTV.setText(w.getItemName());
+        holder.locationTV.setText(w.getItemLocation());
+        showSyncState(holder, w);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ItemViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        // only touch the views whose data actually changed
+        WishListItem w = getItem(position);
+        for (Object payload : payloads) {
+            if (WishListDiffCallback.PAYLOAD_NAME.equals(payload)) {
+                holder.nameTV.setText(w.getItemName());
+            }
+            else if (WishListDiffCallback.PAYLOAD_LOCATION.equals(payload)) {
+                holder.locationTV.setText(w.getItemLocation());
+            }
+            else if (WishListDiffCallback.PAYLOAD_SYNC.equals(payload)) {
+                showSyncState(holder, w);
+            }
+        }
+    }
+
+    private void showSyncState(ItemViewHolder holder, WishListItem w) {
+        holder.itemView.setAlpha(w.isPendingSync() ? PENDING_SYNC_ALPHA : 1f);
+    }
+
+    public class ItemViewHolder extends RecyclerView.ViewHolder {
+        private final TextView nameTV, locationTV;
+
+        public ItemViewHolder(@NonNull View itemView) {
+            super(itemView);
+            nameTV = itemView.findViewById(R.id.rowItemName);
+            locationTV = itemView.findViewById(R.id.rowItemLocation);
+            itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    int position = getBindingAdapterPosition();
+                    if (onItemClickListener != null && position != RecyclerView.NO_POSITION) {
+                        onItemClickListener.onItemClick(getItem(position));
+                    }
+                }
+            });
+        }
+    }
+
+    public interface OnItemClickListener {
+        void onItemClick(WishListItem w);
+    }
+}
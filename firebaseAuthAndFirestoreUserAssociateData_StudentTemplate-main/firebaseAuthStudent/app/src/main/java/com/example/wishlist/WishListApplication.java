@@ -0,0 +1,124 @@
+package com.example.wishlist;
+
+import android.app.Application;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.widget.Toast;
+
+import java.util.List;
+
+/**
+ * Holds the one FirebaseHelper for the whole app.  It lives as long as the process does, so
+ * rotating the screen or coming back to MainActivity doesn't build a new helper and read the
+ * whole list again.  The helper is only made the first time a screen asks for it.
+ *
+ * It also times startup.  A cold start is from when the process started until MainActivity first
+ * draws, a warm start is from MainActivity.onCreate until it first draws when the process was
+ * already running.  Both go to the log and to the metrics tracer, and show up as trace sections
+ * in a system trace.
+ */
+public class WishListApplication extends Application {
+    private static final String TAG = "Denna";
+
+    private static WishListApplication instance;
+
+    private FirebaseHelper firebaseHelper;
+    private SessionManager sessionManager;
+    private final WishListItemStore itemStore = new WishListItemStore();
+    // uptimeMillis when the process started, for the cold start time
+    private long processStartUptime;
+    private boolean firstFrameReported = false;
+
+    @Override
+    public void onCreate() {
+        Trace.beginSection("WishListApplication.onCreate");
+        super.onCreate();
+        instance = this;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            processStartUptime = Process.getStartUptimeMillis();
+        }
+        else {
+            // the closest we can get on older phones
+            processStartUptime = SystemClock.uptimeMillis();
+        }
+        Trace.endSection();
+    }
+
+    /**
+     * @return  the app's FirebaseHelper, made on the first call.  main thread only
+     */
+    public static FirebaseHelper getFirebaseHelper() {
+        return instance.helper();
+    }
+
+    /**
+     * @return  where screens hand items to each other, see WishListItemStore
+     */
+    public static WishListItemStore getItemStore() {
+        return instance.itemStore;
+    }
+
+    /**
+     * @return  who is signed in, see SessionManager.  main thread only
+     */
+    public static SessionManager getSessionManager() {
+        instance.helper();
+        return instance.sessionManager;
+    }
+
+    private FirebaseHelper helper() {
+        if (firebaseHelper == null) {
+            Trace.beginSection("FirebaseHelper.init");
+            // the cache lets it show the last known list right away
+            firebaseHelper = new FirebaseHelper(new WishListCache(this));
+            if (BuildConfig.DEBUG) {
+                // in debug builds the timings and counters are dumped to the log when the app
+                // goes to the background (filter logcat by the tag to see them)
+                firebaseHelper.getMetrics().setExporter(new WishListMetrics.MetricsExporter() {
+                    @Override
+                    public void export(WishListMetrics metrics) {
+                        Log.d(TAG, "FirebaseHelper metrics\n" + metrics.dump());
+                    }
+                });
+            }
+            // a change that couldn't be saved disappears from the list, so say why
+            firebaseHelper.addWriteFailureListener(new FirebaseHelper.WriteFailureListener() {
+                @Override
+                public void onWriteFailed(List<WishListItem> items, Exception e) {
+                    Toast.makeText(WishListApplication.this,
+                            "Couldn't save " + items.size() + " change(s)", Toast.LENGTH_LONG).show();
+                }
+            });
+            // from here on the session manager tells the helper who is signed in, and starts
+            // reading their list as soon as they are
+            sessionManager = new SessionManager(firebaseHelper.getmAuth(), firebaseHelper);
+            sessionManager.start();
+            Trace.endSection();
+        }
+        return firebaseHelper;
+    }
+
+    /**
+     * MainActivity calls this when it draws its first frame.
+     *
+     * @param activityCreateUptime  uptimeMillis when the activity's onCreate started
+     */
+    public void onFirstFrame(long activityCreateUptime) {
+        long now = SystemClock.uptimeMillis();
+        WishListMetrics metrics = helper().getMetrics();
+        if (!firstFrameReported) {
+            firstFrameReported = true;
+            long coldMs = now - processStartUptime;
+            Log.i(TAG, "Cold start took " + coldMs + " ms");
+            metrics.trace("coldStart", System.nanoTime() - coldMs * 1000000, coldMs * 1000000);
+        }
+        else {
+            long warmMs = now - activityCreateUptime;
+            Log.i(TAG, "Warm start took " + warmMs + " ms");
+            metrics.trace("warmStart", System.nanoTime() - warmMs * 1000000, warmMs * 1000000);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.wishlist;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small binary file format for backing up and moving whole wish lists, see
+ * FirebaseHelper.exportWishList and importWishList.  Both sides only ever hold one buffer of the
+ * file in memory, so a list of 100,000 items is never loaded all at once.
+ *
+ * The file is a header (the bytes "WLST" then a version byte) followed by one record per item:
+ *
+ *     length      varint, bytes in the rest of the record
+ *     priority    varint (zig-zag, so a negative priority stays short)
+ *     docID       string
+ *     itemName    string
+ *     location    string
+ *
+ * A varint uses 7 bits per byte, so small numbers take one byte.  A string is its UTF-8 length as
+ * a varint and then the UTF-8 bytes.  The file simply ends after the last record.
+ */
+public class WishListArchive {
+    static final byte[] MAGIC = {'W', 'L', 'S', 'T'};
+    static final byte VERSION = 1;
+    // no real item comes close, anything bigger means the file is damaged
+    public static final int MAX_RECORD_SIZE = 64 * 1024;
+    static final int BUFFER_SIZE = 128 * 1024;
+
+    private WishListArchive() {
+    }
+
+    /**
+     * Writes items to the end of a file through a FileChannel.  Records collect in one direct
+     * buffer that is handed to the channel whenever it fills up, so there is no extra copy
+     * through a byte[] on the way to the file.
+     */
+    public static class Writer implements Closeable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private int count = 0;
+
+        /**
+         * @param channel   where the archive goes.  it is closed with the writer
+         */
+        public Writer(WritableByteChannel channel) {
+            this.channel = channel;
+            buffer.put(MAGIC).put(VERSION);
+        }
+
+        /**
+         * Starts a new archive in file, replacing whatever was there.
+         */
+        public static Writer create(File file) throws IOException {
+            FileChannel channel = new FileOutputStream(file).getChannel();
+            return new Writer(channel);
+        }
+
+        public void write(WishListItem w) throws IOException {
+            byte[] docId = utf8(w.getDocID());
+            byte[] name = utf8(w.getItemName());
+            byte[] location = utf8(w.getItemLocation());
+            int priority = zigZag(w.getItemPriority());
+            int length = varintSize(priority) + stringSize(docId) + stringSize(name) + stringSize(location);
+            if (length > MAX_RECORD_SIZE) {
+                throw new IOException("Item is too big for the archive: " + w.getDocID());
+            }
+            if (buffer.remaining() < varintSize(length) + length) {
+                flush();
+            }
+            putVarint(buffer, length);
+            putVarint(buffer, priority);
+            putString(buffer, docId);
+            putString(buffer, name);
+            putString(buffer, location);
+            count++;
+        }
+
+        /**
+         * @return  how many items have been written so far
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            }
+            finally {
+                channel.close();
+            }
+        }
+
+        private static void putString(ByteBuffer buffer, byte[] bytes) {
+            putVarint(buffer, bytes.length);
+            buffer.put(bytes);
+        }
+
+        private static void putVarint(ByteBuffer buffer, int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+    }
+
+    /**
+     * Reads an archive one item at a time.  It keeps a single fixed size buffer and refills it
+     * from the channel as records are used up, so memory use doesn't depend on the file size.
+     */
+    public static class Reader implements Closeable {
+        private final ReadableByteChannel channel;
+        // kept in "read" mode: position..limit is what hasn't been parsed yet
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private boolean endOfChannel = false;
+        private int count = 0;
+
+        /**
+         * @param channel   the archive.  it is closed with the reader
+         * @throws IOException  if it doesn't start with an archive header this version can read
+         */
+        public Reader(ReadableByteChannel channel) throws IOException {
+            this.channel = channel;
+            buffer.limit(0);
+            if (!fill(MAGIC.length + 1)) {
+                throw new IOException("Not a wish list archive, it is too short");
+            }
+            for (byte b : MAGIC) {
+                if (buffer.get() != b) {
+                    throw new IOException("Not a wish list archive");
+                }
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Can't read wish list archive version " + version);
+            }
+        }
+
+        public static Reader open(File file) throws IOException {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                return new Reader(channel);
+            }
+            catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return  the next item, or null once every item has been read.  an item that was never
+         *          saved (written with no docID) comes back with WishListItem.NO_DOC_ID
+         * @throws IOException  if the file ends in the middle of an item or is damaged
+         */
+        public WishListItem next() throws IOException {
+            if (!fill(1)) {
+                return null;
+            }
+            int length = readVarint();
+            if (length < 0 || length > MAX_RECORD_SIZE) {
+                throw new IOException("Damaged archive, item " + count + " claims to be " + length + " bytes");
+            }
+            if (!fill(length)) {
+                throw new EOFException("Archive ends in the middle of item " + count);
+            }
+            int end = buffer.position() + length;
+            int priority = unZigZag(readVarint());
+            String docId = readString(end);
+            String name = readString(end);
+            String location = readString(end);
+            if (buffer.position() != end) {
+                throw new IOException("Damaged archive, item " + count + " has the wrong length");
+            }
+            // Firestore would read a / as a path, not as part of the id
+            if (docId.indexOf('/') >= 0) {
+                throw new IOException("Damaged archive, item " + count + " has a bad docID");
+            }
+            count++;
+            return new WishListItem(name, location, priority,
+                    docId.isEmpty() ? WishListItem.NO_DOC_ID : docId);
+        }
+
+        /**
+         * @return  how many items have been read so far
+         */
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        // makes sure at least n unread bytes are in the buffer.  false if the file ends first
+        private boolean fill(int n) throws IOException {
+            if (buffer.remaining() >= n) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.position() < n && !endOfChannel) {
+                if (channel.read(buffer) < 0) {
+                    endOfChannel = true;
+                }
+            }
+            buffer.flip();
+            return buffer.remaining() >= n;
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (!fill(1)) {
+                    throw new EOFException("Archive ends in the middle of item " + count);
+                }
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Damaged archive, bad number in item " + count);
+        }
+
+        // the whole record is already in the buffer, end is where it stops
+        private String readString(int end) throws IOException {
+            int length = readVarint();
+            if (length < 0 || buffer.position() + length > end) {
+                throw new IOException("Damaged archive, bad text in item " + count);
+            }
+            String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return s;
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return varintSize(bytes.length) + bytes.length;
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    private static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static int unZigZag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.wishlist;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a copy of each user's wish list in a small file on the device so the list can be shown
+ * the moment the app opens, before Firestore has answered.  Every user gets their own file
+ * (named after their UID) and the file is deleted when they sign out.
+ *
+ * The file is a simple binary format written with DataOutputStream: a version number, the number
+ * of items, then name, location, priority and docID for each item.
+ */
+public class WishListCache {
+    private static final String TAG = "Denna";
+    private static final int FORMAT_VERSION = 1;
+
+    private final File cacheDir;
+    // one thread for all the writes so they happen in order and never on the main thread
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    // uid -> the newest list waiting to be written for that user.  one per user, so saving
+    // another user's list never drops this one
+    private final HashMap<String, List<WishListItem>> pending = new HashMap<>();
+
+    public WishListCache(Context context) {
+        cacheDir = new File(context.getFilesDir(), "wishlist_cache");
+    }
+
+    /**
+     * Reads the saved list for this user.  This runs on the calling thread on purpose - the file
+     * is small and we want the list ready before the first screen is drawn.
+     *
+     * @param uid   the user whose list to read
+     * @return  the saved items, or an empty list if there is no (readable) file
+     */
+    public ArrayList<WishListItem> load(String uid) {
+        ArrayList<WishListItem> items = new ArrayList<>();
+        File file = fileFor(uid);
+        if (!file.exists()) {
+            return items;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return items;
+            }
+            int count = in.readInt();
+            items.ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                String location = in.readUTF();
+                int priority = in.readInt();
+                String docID = in.readUTF();
+                items.add(new WishListItem(name, location, priority, docID));
+            }
+        }
+        catch (IOException e) {
+            // a broken cache file is not a big deal, Firestore will give us the real list
+            Log.d(TAG, "Could not read cached list", e);
+            items.clear();
+        }
+        return items;
+    }
+
+    /**
+     * Saves the list for this user in the background.  The caller should pass a copy that
+     * nobody will change afterwards.
+     */
+    public void save(String uid, List<WishListItem> items) {
+        // lots of quick changes only need the LAST list written, so if a write for this user is
+        // already waiting we just swap in the newer list instead of queueing another one
+        synchronized (this) {
+            if (pending.put(uid, items) != null) {
+                return;
+            }
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<WishListItem> items;
+                synchronized (WishListCache.this) {
+                    items = pending.remove(uid);
+                }
+                write(uid, items);
+            }
+        });
+    }
+
+    public void evict(String uid) {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (fileFor(uid).delete()) {
+                    Log.i(TAG, "Removed cached list for signed out user");
+                }
+            }
+        });
+    }
+
+    private void write(String uid, List<WishListItem> items) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.d(TAG, "Could not create " + cacheDir);
+            return;
+        }
+        // write to a temp file first and then rename it, so a crash halfway through never
+        // leaves a half written cache behind
+        File temp = new File(cacheDir, uid + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(items.size());
+            for (WishListItem w : items) {
+                out.writeUTF(orEmpty(w.getItemName()));
+                out.writeUTF(orEmpty(w.getItemLocation()));
+                out.writeInt(w.getItemPriority());
+                out.writeUTF(orEmpty(w.getDocID()));
+            }
+        }
+        catch (IOException e) {
+            Log.d(TAG, "Could not write cached list", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(fileFor(uid))) {
+            Log.d(TAG, "Could not replace cached list");
+        }
+    }
+
+    private static String orEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private File fileFor(String uid) {
+        return new File(cacheDir, uid + ".bin");
+    }
+}
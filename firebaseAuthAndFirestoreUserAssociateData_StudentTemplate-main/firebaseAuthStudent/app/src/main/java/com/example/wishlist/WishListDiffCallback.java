@@ -0,0 +1,50 @@
+package com.example.wishlist;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Tells DiffUtil how to compare two WishListItems.  Two items are the same row if they have the
+ * same docID, and the row only needs redrawing if something shown in it changed.  It is its own
+ * class (instead of living inside WishListAdapter) so the benchmark module can time the diffing
+ * without needing the adapter's layouts.
+ */
+public class WishListDiffCallback extends DiffUtil.ItemCallback<WishListItem> {
+    // payloads tell onBindViewHolder which part of a row changed
+    public static final String PAYLOAD_NAME = "name";
+    public static final String PAYLOAD_LOCATION = "location";
+    public static final String PAYLOAD_SYNC = "sync";
+
+    @Override
+    public boolean areItemsTheSame(@NonNull WishListItem oldItem, @NonNull WishListItem newItem) {
+        return oldItem.getDocID().equals(newItem.getDocID());
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull WishListItem oldItem, @NonNull WishListItem newItem) {
+        // priority isn't shown in the row, so a priority-only change doesn't redraw anything.
+        // the adapter still hands out the new item when the row is tapped
+        return oldItem.getItemName().equals(newItem.getItemName())
+                && oldItem.getItemLocation().equals(newItem.getItemLocation())
+                && oldItem.isPendingSync() == newItem.isPendingSync();
+    }
+
+    @Override
+    public Object getChangePayload(@NonNull WishListItem oldItem, @NonNull WishListItem newItem) {
+        boolean nameChanged = !oldItem.getItemName().equals(newItem.getItemName());
+        boolean locationChanged = !oldItem.getItemLocation().equals(newItem.getItemLocation());
+        // Firestore just confirmed (or we are now waiting on) a change to this item
+        boolean syncChanged = oldItem.isPendingSync() != newItem.isPendingSync();
+        if (nameChanged && !locationChanged && !syncChanged) {
+            return PAYLOAD_NAME;
+        }
+        if (locationChanged && !nameChanged && !syncChanged) {
+            return PAYLOAD_LOCATION;
+        }
+        if (syncChanged && !nameChanged && !locationChanged) {
+            return PAYLOAD_SYNC;
+        }
+        // more than one thing changed, just redraw the whole row
+        return null;
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.wishlist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lookup tables over the wish list so searching doesn't have to look at every item.  FirebaseHelper
+ * calls put() and remove() every time it changes myItems, so the index is always up to date and
+ * never has to be rebuilt from scratch.
+ *
+ *  - byDocId:      docID -> item
+ *  - names:        every word of every name, sorted, for as-you-type prefix search
+ *  - locations:    word of a location -> the items at that location
+ *  - priorities:   one bucket of items per priority
+ *
+ * Words are lower case, so "bike" finds "Red Bike".  Not thread safe, only use it from the
+ * main thread like myItems.
+ */
+public class WishListIndex {
+    // priorities above this all share the last bucket
+    public static final int MAX_PRIORITY_BUCKET = 10;
+
+    // what was indexed for one item.  WishListItems can be changed with their setters after they
+    // are indexed, so remember the words we used instead of reading them from the item again
+    private static class Entry {
+        final WishListItem item;
+        final List<String> nameKeys;
+        final List<String> locationWords;
+        final int bucket;
+
+        Entry(WishListItem item, List<String> nameKeys, List<String> locationWords, int bucket) {
+            this.item = item;
+            this.nameKeys = nameKeys;
+            this.locationWords = locationWords;
+            this.bucket = bucket;
+        }
+    }
+
+    // keys in names are word + KEY_SEPARATOR + docID, so two items can share a word.  the separator
+    // sorts before every real character so "bike" + sep comes before "bikes" + sep
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final HashMap<String, Entry> byDocId = new HashMap<>();
+    private final TreeMap<String, WishListItem> names = new TreeMap<>();
+    private final HashMap<String, LinkedHashMap<String, WishListItem>> locations = new HashMap<>();
+    private final ArrayList<LinkedHashMap<String, WishListItem>> priorities = new ArrayList<>();
+
+    // docID -> the item now, or null if it was removed, for everything put or removed since the
+    // last drainChanges().  null if this index doesn't track changes
+    private LinkedHashMap<String, WishListItem> changes;
+    // clear() was called since the last drainChanges(), so anything may have changed
+    private boolean everythingChanged = false;
+
+    public WishListIndex() {
+        this(false);
+    }
+
+    /**
+     * @param trackChanges  true to remember which docIDs are put or removed, see drainChanges().
+     *                      the owner then has to drain them regularly or they keep piling up
+     */
+    public WishListIndex(boolean trackChanges) {
+        for (int i = 0; i <= MAX_PRIORITY_BUCKET; i++) {
+            priorities.add(new LinkedHashMap<String, WishListItem>());
+        }
+        if (trackChanges) {
+            changes = new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Adds the item, or replaces the item that has the same docID.
+     */
+    public void put(WishListItem w) {
+        String docId = w.getDocID();
+        remove(docId);
+
+        ArrayList<String> nameKeys = new ArrayList<>();
+        for (String word : words(w.getItemName())) {
+            String key = word + KEY_SEPARATOR + docId;
+            names.put(key, w);
+            nameKeys.add(key);
+        }
+        List<String> locationWords = words(w.getItemLocation());
+        for (String word : locationWords) {
+            LinkedHashMap<String, WishListItem> atLocation = locations.get(word);
+            if (atLocation == null) {
+                atLocation = new LinkedHashMap<>();
+                locations.put(word, atLocation);
+            }
+            atLocation.put(docId, w);
+        }
+        int bucket = bucketFor(w.getItemPriority());
+        priorities.get(bucket).put(docId, w);
+
+        byDocId.put(docId, new Entry(w, nameKeys, locationWords, bucket));
+        if (changes != null && !everythingChanged) {
+            changes.put(docId, w);
+        }
+    }
+
+    public void remove(String docId) {
+        if (changes != null && !everythingChanged) {
+            changes.put(docId, null);
+        }
+        Entry entry = byDocId.remove(docId);
+        if (entry == null) {
+            return;
+        }
+        for (String key : entry.nameKeys) {
+            names.remove(key);
+        }
+        for (String word : entry.locationWords) {
+            LinkedHashMap<String, WishListItem> atLocation = locations.get(word);
+            if (atLocation != null) {
+                atLocation.remove(docId);
+                if (atLocation.isEmpty()) {
+                    locations.remove(word);
+                }
+            }
+        }
+        priorities.get(entry.bucket).remove(docId);
+    }
+
+    public void clear() {
+        byDocId.clear();
+        names.clear();
+        locations.clear();
+        for (LinkedHashMap<String, WishListItem> bucket : priorities) {
+            bucket.clear();
+        }
+        if (changes != null) {
+            changes.clear();
+            everythingChanged = true;
+        }
+    }
+
+    /**
+     * Only for an index made with trackChanges.
+     *
+     * @return  docID -> the item now, or null if it was removed, for every docID put or removed
+     *          since the last call, in the order they changed.  null if clear() was called in
+     *          between, then anything may have changed
+     */
+    public Map<String, WishListItem> drainChanges() {
+        if (changes == null) {
+            return null;
+        }
+        Map<String, WishListItem> drained = everythingChanged ? null : Collections.unmodifiableMap(changes);
+        changes = new LinkedHashMap<>();
+        everythingChanged = false;
+        return drained;
+    }
+
+    public int size() {
+        return byDocId.size();
+    }
+
+    public boolean contains(String docId) {
+        return byDocId.containsKey(docId);
+    }
+
+    /**
+     * @return  the item with this docID, or null
+     */
+    public WishListItem get(String docId) {
+        Entry entry = byDocId.get(docId);
+        return entry == null ? null : entry.item;
+    }
+
+    /**
+     * As-you-type search.  Finds items where any word of the name starts with the prefix, so
+     * "bi" finds "Bike" and "Red bike".  With more than one word every word has to match,
+     * so "red bi" finds "Red bike" but not "Bike" or "Red lamp".
+     *
+     * @param prefix    what the user has typed so far
+     * @param limit     at most this many results
+     * @return  the matches, ordered by the word that matched the first word typed
+     */
+    public List<WishListItem> searchByName(String prefix, int limit) {
+        List<String> typed = words(prefix);
+        if (typed.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String start = typed.get(0);
+        // every key that starts with the prefix sorts between prefix and prefix + the highest char
+        Map<String, WishListItem> matches = names.subMap(start, true, start + Character.MAX_VALUE, false);
+        // an item can match on more than one word, only list it once
+        LinkedHashMap<String, WishListItem> results = new LinkedHashMap<>();
+        for (WishListItem w : matches.values()) {
+            if (results.containsKey(w.getDocID()) || !matchesEveryWord(byDocId.get(w.getDocID()), typed)) {
+                continue;
+            }
+            results.put(w.getDocID(), w);
+            if (results.size() >= limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    // the first typed word already matched, check the rest against the item's own words
+    // instead of looking each one up in names
+    private static boolean matchesEveryWord(Entry entry, List<String> typed) {
+        for (int i = 1; i < typed.size(); i++) {
+            boolean found = false;
+            for (String key : entry.nameKeys) {
+                if (key.startsWith(typed.get(i))) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param location  a word from the location, e.g. "target" finds "Target" and "Target downtown"
+     * @return  the items at that location
+     */
+    public List<WishListItem> findByLocation(String location) {
+        LinkedHashMap<String, WishListItem> atLocation = locations.get(normalize(location));
+        if (atLocation == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(atLocation.values());
+    }
+
+    /**
+     * @return  the items with a priority from min to max (both included), lowest priority first
+     */
+    public List<WishListItem> findByPriority(int min, int max) {
+        ArrayList<WishListItem> results = new ArrayList<>();
+        for (int bucket = bucketFor(min); bucket <= bucketFor(max); bucket++) {
+            for (WishListItem w : priorities.get(bucket).values()) {
+                // the end buckets can hold priorities outside the range
+                if (w.getItemPriority() >= min && w.getItemPriority() <= max) {
+                    results.add(w);
+                }
+            }
+        }
+        return results;
+    }
+
+    private static int bucketFor(int priority) {
+        return Math.max(0, Math.min(priority, MAX_PRIORITY_BUCKET));
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> words(String text) {
+        ArrayList<String> words = new ArrayList<>();
+        for (String word : normalize(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty() && !words.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -2,10 +2,22 @@ package com.example.wishlist;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.google.firebase.firestore.Exclude;
+
 public class WishListItem implements Parcelable {
+    // docID of an item that hasn't been saved to Firestore yet
+    public static final String NO_DOC_ID = "No docID yet";
+
     private String itemName, itemLocation, docID;
     private int itemPriority;
 
+    // one bit per field (see the MASK_ values in WishListItemMapper) that a setter has changed
+    // since this object was created or last saved.  editData uses it to send only those fields
+    private int dirtyFields = 0;
+    // true while a change to this item is only on the device and Firestore hasn't confirmed it,
+    // e.g. because we are offline.  never saved
+    private boolean pendingSync = false;
+
         // may be implemented later so we can sort by order of importance on list
         // value of 1-3 with 1 being most desired items
 
@@ -19,7 +31,7 @@ public class WishListItem implements Parcelable {
 
         @Override
         public WishListItem[] newArray(int size) {
-            return new WishListItem[0];
+            return new WishListItem[size];
         }
     };
 
@@ -72,14 +84,27 @@ public class WishListItem implements Parcelable {
         this.itemName = itemName;
         this.itemLocation = itemLocation;
         this.itemPriority = itemPriority;
-        this.docID = "No docID yet";
+        this.docID = NO_DOC_ID;
     }
 
     public WishListItem() {
         this.itemName = "";
         this.itemLocation = "";
         this.itemPriority = 5;
-        this.docID = "No docID yet";
+        this.docID = NO_DOC_ID;
+    }
+
+    /**
+     * FirebaseHelper never changes an item once it is in a published list, it swaps in a changed
+     * copy instead.  Use this to make one.
+     *
+     * @return  a new item with the same fields, change tracking included
+     */
+    public WishListItem copy() {
+        WishListItem w = new WishListItem(itemName, itemLocation, itemPriority, docID);
+        w.dirtyFields = dirtyFields;
+        w.pendingSync = pendingSync;
+        return w;
     }
 
     public String toString() {
@@ -91,6 +116,9 @@ public class WishListItem implements Parcelable {
     }
 
     public void setItemName(String itemName) {
+        if (!same(this.itemName, itemName)) {
+            dirtyFields |= WishListItemMapper.MASK_NAME;
+        }
         this.itemName = itemName;
     }
 
@@ -99,6 +127,9 @@ public class WishListItem implements Parcelable {
     }
 
     public void setItemLocation(String itemLocation) {
+        if (!same(this.itemLocation, itemLocation)) {
+            dirtyFields |= WishListItemMapper.MASK_LOCATION;
+        }
         this.itemLocation = itemLocation;
     }
 
@@ -107,6 +138,9 @@ public class WishListItem implements Parcelable {
     }
 
     public void setItemPriority(int itemPriority) {
+        if (this.itemPriority != itemPriority) {
+            dirtyFields |= WishListItemMapper.MASK_PRIORITY;
+        }
         this.itemPriority = itemPriority;
     }
 
@@ -116,4 +150,27 @@ public class WishListItem implements Parcelable {
     public void setDocID(String docID) {
         this.docID = docID;
     }
+
+    // @Exclude keeps Firestore from ever saving the change tracking as if it were a field
+    @Exclude
+    public int getDirtyFields() {
+        return dirtyFields;
+    }
+
+    public void clearDirtyFields() {
+        dirtyFields = 0;
+    }
+
+    @Exclude
+    public boolean isPendingSync() {
+        return pendingSync;
+    }
+
+    public void setPendingSync(boolean pendingSync) {
+        this.pendingSync = pendingSync;
+    }
+
+    private static boolean same(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
 }
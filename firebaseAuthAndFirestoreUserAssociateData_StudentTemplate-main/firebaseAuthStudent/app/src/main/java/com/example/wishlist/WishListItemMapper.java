@@ -0,0 +1,139 @@
+package com.example.wishlist;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns WishListItems into the Map that Firestore stores and back again.  Firestore can do this
+ * by itself with toObject() and by passing the object to set(), but it uses reflection to find the
+ * getters and setters for every single document.  Since we know exactly which four fields a
+ * WishListItem has, doing it by hand is much cheaper.
+ *
+ * The field masks let a caller pick which fields go into the map, so an edit can send only the
+ * fields that actually changed.
+ */
+public class WishListItemMapper {
+    // the names of the fields in Firestore.  these match the getter names so documents written
+    // by older versions of the app (that used toObject / set(w)) still read correctly
+    public static final String FIELD_NAME = "itemName";
+    public static final String FIELD_LOCATION = "itemLocation";
+    public static final String FIELD_PRIORITY = "itemPriority";
+    public static final String FIELD_DOC_ID = "docID";
+
+    // one bit per field, combine them with |
+    public static final int MASK_NAME = 1;
+    public static final int MASK_LOCATION = 1 << 1;
+    public static final int MASK_PRIORITY = 1 << 2;
+    public static final int MASK_DOC_ID = 1 << 3;
+    public static final int MASK_ALL = MASK_NAME | MASK_LOCATION | MASK_PRIORITY | MASK_DOC_ID;
+
+    private WishListItemMapper() {
+    }
+
+    public static Map<String, Object> toMap(WishListItem w) {
+        return toMap(w, MASK_ALL);
+    }
+
+    /**
+     * @param w     the item to convert
+     * @param mask  which fields to include, e.g. MASK_NAME | MASK_LOCATION
+     * @return  a map with just the fields in the mask, ready for set() or update()
+     */
+    public static Map<String, Object> toMap(WishListItem w, int mask) {
+        // sized so the four fields fit without the HashMap having to grow
+        HashMap<String, Object> data = new HashMap<>(8);
+        if ((mask & MASK_NAME) != 0) {
+            data.put(FIELD_NAME, w.getItemName());
+        }
+        if ((mask & MASK_LOCATION) != 0) {
+            data.put(FIELD_LOCATION, w.getItemLocation());
+        }
+        if ((mask & MASK_PRIORITY) != 0) {
+            data.put(FIELD_PRIORITY, w.getItemPriority());
+        }
+        if ((mask & MASK_DOC_ID) != 0) {
+            data.put(FIELD_DOC_ID, w.getDocID());
+        }
+        return data;
+    }
+
+    /**
+     * @param docId     the id of the document the data came from
+     * @param data      the document's fields
+     * @return  a WishListItem, with defaults for any field that is missing
+     */
+    public static WishListItem fromMap(String docId, Map<String, Object> data) {
+        Object priority = data.get(FIELD_PRIORITY);
+        return new WishListItem(
+                asString(data.get(FIELD_NAME)),
+                asString(data.get(FIELD_LOCATION)),
+                // Firestore hands back whole numbers as Long
+                priority instanceof Number ? ((Number) priority).intValue() : 5,
+                docId);
+    }
+
+    public static WishListItem fromSnapshot(DocumentSnapshot doc) {
+        // reading the fields one at a time skips building the whole data map
+        Long priority = doc.getLong(FIELD_PRIORITY);
+        return new WishListItem(
+                asString(doc.getString(FIELD_NAME)),
+                asString(doc.getString(FIELD_LOCATION)),
+                priority != null ? priority.intValue() : 5,
+                // the snapshot always knows the real docID, even for documents saved before docID was a field
+                doc.getId());
+    }
+
+    /**
+     * Roughly how many bytes the fields in the mask take up, using the way Firestore counts
+     * document size (a string is its UTF-8 length + 1, a number is 8).  Good enough for counting
+     * traffic, it doesn't know about the protocol overhead.
+     */
+    public static int estimateSize(WishListItem w, int mask) {
+        int size = 0;
+        if ((mask & MASK_NAME) != 0) {
+            size += stringSize(FIELD_NAME) + stringSize(w.getItemName());
+        }
+        if ((mask & MASK_LOCATION) != 0) {
+            size += stringSize(FIELD_LOCATION) + stringSize(w.getItemLocation());
+        }
+        if ((mask & MASK_PRIORITY) != 0) {
+            size += stringSize(FIELD_PRIORITY) + 8;
+        }
+        if ((mask & MASK_DOC_ID) != 0) {
+            size += stringSize(FIELD_DOC_ID) + stringSize(w.getDocID());
+        }
+        return size;
+    }
+
+    private static int stringSize(String s) {
+        if (s == null) {
+            return 1;
+        }
+        // count the UTF-8 bytes without making a byte array
+        int bytes = 1;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            }
+            else if (c < 0x800) {
+                bytes += 2;
+            }
+            else if (Character.isHighSurrogate(c)) {
+                // the pair is one 4 byte character
+                bytes += 4;
+                i++;
+            }
+            else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static String asString(Object value) {
+        return value == null ? "" : value.toString();
+    }
+}
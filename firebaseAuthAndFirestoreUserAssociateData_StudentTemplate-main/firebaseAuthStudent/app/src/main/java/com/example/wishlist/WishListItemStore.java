@@ -0,0 +1,72 @@
+package com.example.wishlist;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hands WishListItems from one screen to the next without putting them in the Intent.  Every
+ * screen runs in the same process, so the screen that starts another one puts the item in here
+ * and only sends its docID.  The new screen gets the same object back, nothing is copied into a
+ * Parcel and back, and a big list can never go over the 1 MB limit on what an Intent can carry.
+ *
+ * The receiving screen should release() the item when it finishes.  If it never does (the user
+ * backed out in some way we didn't expect) only the last few items are kept, the oldest is
+ * dropped first, so the store can't keep growing.
+ *
+ * Nothing in here survives the process being killed.  A screen that can be recreated after that
+ * has to save what it needs in its own saved instance state.
+ */
+public class WishListItemStore {
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final LinkedHashMap<String, WishListItem> items;
+
+    public WishListItemStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity  most items kept at once
+     */
+    public WishListItemStore(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        // access order, so the eldest entry is the one used least recently
+        items = new LinkedHashMap<String, WishListItem>(capacity + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WishListItem> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param w     the item to hand off.  it must already have a docID
+     * @return  the docID to put in the Intent
+     */
+    public synchronized String put(WishListItem w) {
+        String docId = w.getDocID();
+        if (docId == null || docId.equals(WishListItem.NO_DOC_ID)) {
+            throw new IllegalArgumentException("Only saved items can be handed off: " + w);
+        }
+        items.put(docId, w);
+        return docId;
+    }
+
+    /**
+     * @return  the item that was put in with this docID, or null if it was released, dropped, or
+     *          the process was restarted since
+     */
+    public synchronized WishListItem get(String docId) {
+        return docId == null ? null : items.get(docId);
+    }
+
+    public synchronized void release(String docId) {
+        items.remove(docId);
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.wishlist;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * How FirebaseHelper brings its working copy of the list (myItems and the WishListIndex over it)
+ * up to date with what Firestore sends back.  Kept out of FirebaseHelper so it can run without
+ * Firestore, which is how the benchmark module times the real thing.
+ *
+ * Like myItems itself, only use it from the main thread.
+ */
+public class WishListMerge {
+    private WishListMerge() {
+    }
+
+    /**
+     * A full read: throw away what we had and show exactly what the server sent.
+     */
+    public static void replaceAll(ArrayList<WishListItem> items, WishListIndex index,
+                                  List<WishListItem> fetched) {
+        items.clear();
+        items.addAll(fetched);
+        index.clear();
+        for (WishListItem w : fetched) {
+            index.put(w);
+        }
+    }
+
+    /**
+     * What the snapshot listener got: documents that were added or modified, and the docIDs of
+     * the ones that were removed.
+     */
+    public static void applyChanges(ArrayList<WishListItem> items, WishListIndex index,
+                                    List<WishListItem> changed, List<String> removedIds) {
+        // items can also hold optimistic local changes, so its positions don't always line up
+        // with the query results.  match each change up by docID instead of by index
+        for (WishListItem w : changed) {
+            int i = indexOfDocId(items, index, w.getDocID());
+            if (i >= 0) {
+                items.set(i, w);
+            }
+            else {
+                items.add(w);
+            }
+            index.put(w);
+        }
+        for (String docId : removedIds) {
+            int i = indexOfDocId(items, index, docId);
+            if (i >= 0) {
+                items.remove(i);
+                index.remove(docId);
+            }
+        }
+    }
+
+    /**
+     * Whatever came from the server doesn't know about our unconfirmed writes yet, so put them
+     * back on top in the order they were made.
+     */
+    public static void reapply(ArrayList<WishListItem> items, WishListIndex index,
+                               Collection<PendingMutation> mutations) {
+        for (PendingMutation mutation : mutations) {
+            WishListItem w = mutation.getItem();
+            int i = indexOfDocId(items, index, w.getDocID());
+            switch (mutation.getType()) {
+                case ADD:
+                    if (i >= 0) {
+                        items.set(i, w);
+                    }
+                    else {
+                        items.add(w);
+                    }
+                    index.put(w);
+                    break;
+                case EDIT:
+                    if (i >= 0) {
+                        items.set(i, w);
+                        index.put(w);
+                    }
+                    break;
+                case DELETE:
+                    if (i >= 0) {
+                        items.remove(i);
+                        index.remove(w.getDocID());
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return  where the item with this docID is in items, or -1
+     */
+    public static int indexOfDocId(List<WishListItem> items, WishListIndex index, String docId) {
+        // the index knows every docID in items, so a miss doesn't need the scan
+        if (!index.contains(docId)) {
+            return -1;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getDocID().equals(docId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.wishlist;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts and times what FirebaseHelper does, so we can see how fast sign in, reads and writes
+ * really are on a phone instead of guessing from the log.
+ *
+ *  - a latency histogram for each Op
+ *  - counters for documents read and written and (estimated) bytes sent and received
+ *  - a Tracer that is handed a sample of the individual timings, e.g. to forward to a tracing tool
+ *  - a MetricsExporter that export() hands everything to.  the default does nothing
+ *
+ * Recording is just a few atomic adds, so it is safe to call from any thread and cheap enough to
+ * leave on all the time.
+ */
+public class WishListMetrics {
+
+    // USER is writing the users/{uid} document after a sign up, AUTH is only the sign up itself
+    public enum Op {AUTH, ADD, EDIT, DELETE, READ, USER}
+
+    /**
+     * Counts how many timings fell into each bucket.  Bucket i holds timings up to 2^i
+     * microseconds, so the buckets go from 1us to about 35 minutes with a fixed amount of memory,
+     * and a percentile is accurate to within a factor of 2.
+     */
+    public static class LatencyHistogram {
+        static final int BUCKETS = 32;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        public void record(long micros) {
+            micros = Math.max(0, micros);
+            counts.incrementAndGet(bucketFor(micros));
+            count.incrementAndGet();
+            totalMicros.addAndGet(micros);
+            long max;
+            do {
+                max = maxMicros.get();
+            } while (micros > max && !maxMicros.compareAndSet(max, micros));
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMeanMicros() {
+            long n = count.get();
+            return n == 0 ? 0 : totalMicros.get() / n;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros.get();
+        }
+
+        /**
+         * @param percent   e.g. 50 for the median, 99 for p99
+         * @return  the upper end of the bucket the percentile falls in
+         */
+        public long getPercentileMicros(double percent) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long wanted = (long) Math.ceil(percent / 100.0 * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= wanted) {
+                    return Math.min(1L << i, getMaxMicros());
+                }
+            }
+            return getMaxMicros();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            count.set(0);
+            totalMicros.set(0);
+            maxMicros.set(0);
+        }
+
+        static int bucketFor(long micros) {
+            // the smallest i with micros <= 2^i
+            int bucket = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+            return Math.min(bucket, BUCKETS - 1);
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Op.values().length];
+    private final AtomicLong documentReads = new AtomicLong();
+    private final AtomicLong documentWrites = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    private volatile Tracer tracer;
+    private volatile double traceSampleRate = 0;
+    private final Random random = new Random();
+    private volatile MetricsExporter exporter = MetricsExporter.NO_OP;
+
+    public WishListMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @param op            what was timed
+     * @param startNanos    System.nanoTime() from when it started.  the end is now
+     */
+    public void record(Op op, long startNanos) {
+        long durationNanos = System.nanoTime() - startNanos;
+        histograms[op.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        trace(op.name(), startNanos, durationNanos);
+    }
+
+    /**
+     * Sends a timing to the tracer, if there is one and this one is picked by the sample rate.
+     * Use it for steps that aren't an Op, like mapping a snapshot.
+     */
+    public void trace(String name, long startNanos, long durationNanos) {
+        Tracer tracer = this.tracer;
+        if (tracer != null && random.nextDouble() < traceSampleRate) {
+            tracer.onSpan(name, startNanos, durationNanos);
+        }
+    }
+
+    public void countReads(long documents, long bytes) {
+        documentReads.addAndGet(documents);
+        bytesReceived.addAndGet(bytes);
+    }
+
+    public void countWrites(long documents, long bytes) {
+        documentWrites.addAndGet(documents);
+        bytesSent.addAndGet(bytes);
+    }
+
+    public LatencyHistogram getHistogram(Op op) {
+        return histograms[op.ordinal()];
+    }
+
+    public long getDocumentReads() {
+        return documentReads.get();
+    }
+
+    public long getDocumentWrites() {
+        return documentWrites.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @param tracer        gets the sampled timings, or null for none
+     * @param sampleRate    0 to 1, how many of the timings to send.  1 sends all of them
+     */
+    public void setTracer(Tracer tracer, double sampleRate) {
+        this.traceSampleRate = sampleRate;
+        this.tracer = tracer;
+    }
+
+    public void setExporter(MetricsExporter exporter) {
+        this.exporter = exporter == null ? MetricsExporter.NO_OP : exporter;
+    }
+
+    public void export() {
+        exporter.export(this);
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        documentReads.set(0);
+        documentWrites.set(0);
+        bytesSent.set(0);
+        bytesReceived.set(0);
+    }
+
+    /**
+     * @return  everything as readable text, one line per Op plus the counters
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Op op : Op.values()) {
+            LatencyHistogram h = getHistogram(op);
+            sb.append(String.format(Locale.ROOT, "%-6s n=%d mean=%dus p50=%dus p99=%dus max=%dus%n",
+                    op, h.getCount(), h.getMeanMicros(), h.getPercentileMicros(50),
+                    h.getPercentileMicros(99), h.getMaxMicros()));
+        }
+        sb.append(String.format(Locale.ROOT, "docs read=%d written=%d, bytes in=%d out=%d",
+                getDocumentReads(), getDocumentWrites(), getBytesReceived(), getBytesSent()));
+        return sb.toString();
+    }
+
+    public interface Tracer {
+        // called on whatever thread did the work, keep it quick
+        void onSpan(String name, long startNanos, long durationNanos);
+    }
+
+    public interface MetricsExporter {
+        MetricsExporter NO_OP = new MetricsExporter() {
+            @Override
+            public void export(WishListMetrics metrics) {
+            }
+        };
+
+        void export(WishListMetrics metrics);
+    }
+}
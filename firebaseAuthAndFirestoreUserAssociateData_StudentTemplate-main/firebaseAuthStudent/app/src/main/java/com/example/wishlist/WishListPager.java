@@ -0,0 +1,446 @@
+package com.example.wishlist;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads a wish list one page at a time instead of all at once.  Each page is a query that starts
+ * right after the last document of the page before it (a "cursor"), so Firestore only sends us
+ * pageSize documents per read.  Only a few pages around where the user is looking are kept in
+ * memory - pages far away are dropped and loaded again if the user scrolls back to them.
+ *
+ * The pages that are in memory always sit next to each other, so the screen shows them as one
+ * list called the "window".  Positions passed in and out of this class are positions in the window.
+ *
+ * Once a page has been read, its cursors are treated as the edges of a range, not as "the next
+ * pageSize items".  Items added or deleted since then change how many items are in the page, but
+ * never which page an item belongs to, so reading a page again can't skip or repeat items.
+ *
+ * The query has to be ordered by itemName (Firestore breaks ties by docID), like the one from
+ * FirebaseHelper.getPager, so applyLatest can tell which page an item belongs on.  The pager only
+ * holds its own pages; applyLatest just keeps them in step with the list FirebaseHelper already
+ * has, so changes don't have to be read again.
+ */
+public class WishListPager {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_PREFETCH_DISTANCE = 15;     // items from the edge of the window
+    public static final int DEFAULT_MAX_RESIDENT_PAGES = 5;
+    private static final String TAG = "Denna";
+
+    private final Query query;
+    // documents are turned into WishListItems here, not on the main thread
+    private final Executor mapExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final int maxResidentPages;
+
+    // last document of every page we have loaded so far, used as the cursor for the next page.
+    // this is the only thing we keep for pages that have been dropped from memory
+    private final ArrayList<DocumentSnapshot> pageEnds = new ArrayList<>();
+    // page number -> items, only for the pages that are in memory right now.  the lists are
+    // changed in place by applyLatest, the window is always a copy
+    private final TreeMap<Integer, List<WishListItem>> residentPages = new TreeMap<>();
+    private ArrayList<WishListItem> window = new ArrayList<>();
+    private boolean reachedEnd = false;
+    private boolean loading = false;
+    private PageListener pageListener;
+    private Source source = Source.DEFAULT;
+    // changes from applyLatest that came in while a refill was sorting, null when none is running
+    private ArrayList<Map<String, WishListItem>> changesDuringRefill;
+    private long refillGeneration = 0;
+
+    public WishListPager(Query orderedQuery, Executor mapExecutor) {
+        this(orderedQuery, mapExecutor, DEFAULT_PAGE_SIZE, DEFAULT_PREFETCH_DISTANCE,
+                DEFAULT_MAX_RESIDENT_PAGES);
+    }
+
+    /**
+     * @param orderedQuery      the query to page through.  it MUST be ordered by itemName, cursors
+     *                          don't mean anything without an order
+     * @param mapExecutor       a background thread to turn documents into WishListItems on
+     * @param pageSize          how many documents to read per page
+     * @param prefetchDistance  start loading the next page when the user is this many items
+     *                          away from the edge of the window
+     * @param maxResidentPages  how many pages to keep in memory at once
+     */
+    public WishListPager(Query orderedQuery, Executor mapExecutor, int pageSize, int prefetchDistance,
+                         int maxResidentPages) {
+        this.query = orderedQuery;
+        this.mapExecutor = mapExecutor;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        // we need at least the page being looked at and the one being loaded next to it
+        this.maxResidentPages = Math.max(2, maxResidentPages);
+    }
+
+    public void setPageListener(PageListener pageListener) {
+        this.pageListener = pageListener;
+    }
+
+    /**
+     * Where pages are read from.  Source.CACHE when something else (FirebaseHelper's snapshot
+     * listener) already keeps the whole list up to date on the device, so paging through it doesn't
+     * pay for reading every document from the server a second time.
+     */
+    public void setSource(Source source) {
+        this.source = source;
+    }
+
+    public void loadFirstPage() {
+        loadPage(0);
+    }
+
+    public List<WishListItem> getWindow() {
+        return window;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Tell the pager which item is on screen.  If it is close to either edge of the window the
+     * page on that side gets loaded before the user actually gets there.
+     *
+     * @param windowPosition    position of a visible item in getWindow()
+     */
+    public void onItemVisible(int windowPosition) {
+        if (residentPages.isEmpty()) {
+            return;
+        }
+        if (!reachedEnd && windowPosition >= window.size() - prefetchDistance) {
+            loadPage(residentPages.lastKey() + 1);
+        }
+        else if (residentPages.firstKey() > 0 && windowPosition < prefetchDistance) {
+            loadPage(residentPages.firstKey() - 1);
+        }
+    }
+
+    /**
+     * Shows a first page picked out of a list we already have (e.g. FirebaseHelper's, from the
+     * device) while the real first page loads.  The picking is done on mapExecutor.  Ignored once
+     * a real page has loaded.
+     *
+     * @param items     a list that won't change under us, like WishListSnapshot.getItems()
+     */
+    public void showPreview(final List<WishListItem> items) {
+        mapExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // only the first pageSize in query order are shown, so keep the pageSize smallest
+                // as we go instead of sorting the whole list
+                PriorityQueue<WishListItem> smallest =
+                        new PriorityQueue<>(pageSize + 1, Collections.reverseOrder(QUERY_ORDER));
+                for (WishListItem w : items) {
+                    smallest.add(w);
+                    if (smallest.size() > pageSize) {
+                        smallest.poll();
+                    }
+                }
+                final ArrayList<WishListItem> firstPage = new ArrayList<>(smallest);
+                Collections.sort(firstPage, QUERY_ORDER);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (residentPages.isEmpty() && pageListener != null) {
+                            pageListener.onWindowChanged(firstPage, 0, 0);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Brings the pages in memory up to date with a new snapshot from FirebaseHelper without
+     * reading anything from Firestore.  Only the items the snapshot says changed are looked at:
+     * each one is taken off the page it was on and put on the page its name now belongs to, if
+     * that page is in memory.  So an edit costs about one page's worth of work, not the whole list.
+     *
+     * When the snapshot doesn't say what changed (a full read, a different user) every page in
+     * memory is filled again from the whole list, which is sorted on mapExecutor.  Changes that
+     * arrive while that is going on are applied after it.
+     */
+    public void applyLatest(WishListSnapshot snapshot) {
+        if (residentPages.isEmpty()) {
+            return;
+        }
+        Map<String, WishListItem> changes = snapshot.getChanges();
+        if (changes == null) {
+            refill(snapshot.getItems());
+        }
+        else if (changesDuringRefill != null) {
+            changesDuringRefill.add(changes);
+        }
+        else if (applyChanges(changes)) {
+            windowChanged();
+        }
+    }
+
+    private void refill(final List<WishListItem> latest) {
+        final long generation = ++refillGeneration;
+        // anything buffered for an older refill is already in latest
+        changesDuringRefill = new ArrayList<>();
+        mapExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ArrayList<WishListItem> sorted = new ArrayList<>(latest);
+                Collections.sort(sorted, QUERY_ORDER);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != refillGeneration) {
+                            // a newer refill is on its way
+                            return;
+                        }
+                        boolean changed = false;
+                        for (Map.Entry<Integer, List<WishListItem>> entry : residentPages.entrySet()) {
+                            List<WishListItem> updated = itemsOnPage(sorted, entry.getKey());
+                            if (!sameItems(entry.getValue(), updated)) {
+                                entry.setValue(updated);
+                                changed = true;
+                            }
+                        }
+                        for (Map<String, WishListItem> changes : changesDuringRefill) {
+                            changed |= applyChanges(changes);
+                        }
+                        changesDuringRefill = null;
+                        if (changed) {
+                            windowChanged();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // returns true if a page in memory changed
+    private boolean applyChanges(Map<String, WishListItem> changes) {
+        boolean changed = false;
+        for (Map.Entry<String, WishListItem> change : changes.entrySet()) {
+            changed |= removeFromPages(change.getKey());
+            if (change.getValue() != null) {
+                changed |= insertIntoPage(change.getValue());
+            }
+        }
+        return changed;
+    }
+
+    private boolean removeFromPages(String docId) {
+        for (List<WishListItem> items : residentPages.values()) {
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getDocID().equals(docId)) {
+                    items.remove(i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean insertIntoPage(WishListItem w) {
+        List<WishListItem> items = residentPages.get(pageFor(w));
+        if (items == null) {
+            // its page isn't in memory, it will be there when that page is read
+            return false;
+        }
+        int at = Collections.binarySearch(items, w, QUERY_ORDER);
+        items.add(at < 0 ? -at - 1 : at, w);
+        return true;
+    }
+
+    // the page w falls on going by the cursors, or -1 if it is past every page read so far
+    private int pageFor(WishListItem w) {
+        // pageEnds is in query order, find the first page whose last document isn't before w
+        int low = 0;
+        int high = pageEnds.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(w, pageEnds.get(mid)) <= 0) {
+                high = mid - 1;
+            }
+            else {
+                low = mid + 1;
+            }
+        }
+        if (low < pageEnds.size()) {
+            return low;
+        }
+        return reachedEnd && !pageEnds.isEmpty() ? pageEnds.size() - 1 : -1;
+    }
+
+    private void windowChanged() {
+        rebuildWindow();
+        if (pageListener != null) {
+            pageListener.onWindowChanged(window, 0, 0);
+        }
+    }
+
+    // the items in sorted (already in query order) that fall between page's cursors
+    private List<WishListItem> itemsOnPage(List<WishListItem> sorted, int page) {
+        DocumentSnapshot after = page > 0 ? pageEnds.get(page - 1) : null;
+        DocumentSnapshot upTo = isOpenEnded(page) ? null : pageEnds.get(page);
+        ArrayList<WishListItem> items = new ArrayList<>();
+        for (WishListItem w : sorted) {
+            if (after != null && compare(w, after) <= 0) {
+                continue;
+            }
+            if (upTo != null && compare(w, upTo) > 0) {
+                break;
+            }
+            items.add(w);
+        }
+        return items;
+    }
+
+    // the last page, once we know nothing comes after it, takes everything past its cursor
+    private boolean isOpenEnded(int page) {
+        return reachedEnd && page == pageEnds.size() - 1;
+    }
+
+    private static int compare(WishListItem w, DocumentSnapshot cursor) {
+        String name = cursor.getString(WishListItemMapper.FIELD_NAME);
+        int byName = w.getItemName().compareTo(name == null ? "" : name);
+        return byName != 0 ? byName : w.getDocID().compareTo(cursor.getId());
+    }
+
+    private static boolean sameItems(List<WishListItem> a, List<WishListItem> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // itemName, then docID, the same order Firestore gives the query
+    private static final Comparator<WishListItem> QUERY_ORDER = new Comparator<WishListItem>() {
+        @Override
+        public int compare(WishListItem a, WishListItem b) {
+            int byName = a.getItemName().compareTo(b.getItemName());
+            return byName != 0 ? byName : a.getDocID().compareTo(b.getDocID());
+        }
+    };
+
+    private void loadPage(int page) {
+        // one page at a time keeps the cursors in order
+        if (loading || residentPages.containsKey(page) || page > pageEnds.size()) {
+            return;
+        }
+        loading = true;
+
+        boolean firstTime = page == pageEnds.size();
+        Query pageQuery = page > 0 ? query.startAfter(pageEnds.get(page - 1)) : query;
+        if (firstTime) {
+            pageQuery = pageQuery.limit(pageSize);
+        }
+        else if (!isOpenEnded(page)) {
+            // a page we had before.  read exactly the range it covered, however many items that
+            // is now, so nothing slips between it and the page after it
+            pageQuery = pageQuery.endAt(pageEnds.get(page));
+        }
+        pageQuery.get(source)
+                // passing mapExecutor makes onComplete run on a background thread
+                .addOnCompleteListener(mapExecutor, new OnCompleteListener<QuerySnapshot>() {
+                    @Override
+                    public void onComplete(@NonNull Task<QuerySnapshot> task) {
+                        List<DocumentSnapshot> docs = task.isSuccessful()
+                                ? task.getResult().getDocuments() : null;
+                        ArrayList<WishListItem> items = new ArrayList<>();
+                        if (docs != null) {
+                            for (DocumentSnapshot doc : docs) {
+                                items.add(WishListItemMapper.fromSnapshot(doc));
+                            }
+                        }
+                        // the pages and cursors are only touched on the main thread
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                loading = false;
+                                if (docs == null) {
+                                    Log.d(TAG, "Error loading page " + page, task.getException());
+                                    return;
+                                }
+                                if (firstTime) {
+                                    // first time we've seen this page, remember where it ends
+                                    if (docs.size() < pageSize) {
+                                        reachedEnd = true;
+                                    }
+                                    if (docs.isEmpty()) {
+                                        return;
+                                    }
+                                    pageEnds.add(docs.get(docs.size() - 1));
+                                }
+                                pageLoaded(page, items);
+                            }
+                        });
+                    }
+                });
+    }
+
+    private void pageLoaded(int page, List<WishListItem> items) {
+        boolean addedAtTop = !residentPages.isEmpty() && page < residentPages.firstKey();
+        residentPages.put(page, items);
+
+        // drop pages from the side of the window away from the one we just loaded
+        int removedFromTop = 0;
+        while (residentPages.size() > maxResidentPages) {
+            if (addedAtTop) {
+                residentPages.remove(residentPages.lastKey());
+            }
+            else {
+                removedFromTop += residentPages.remove(residentPages.firstKey()).size();
+            }
+        }
+
+        rebuildWindow();
+        Log.i(TAG, "Loaded page " + page + ", " + residentPages.size() + " page(s) in memory");
+
+        if (pageListener != null) {
+            pageListener.onWindowChanged(window, addedAtTop ? items.size() : 0, removedFromTop);
+        }
+    }
+
+    private void rebuildWindow() {
+        // always a new list, so anyone holding the old window can still compare against it
+        ArrayList<WishListItem> newWindow = new ArrayList<>();
+        for (List<WishListItem> pageItems : residentPages.values()) {
+            newWindow.addAll(pageItems);
+        }
+        window = newWindow;
+    }
+
+    public interface PageListener {
+        /**
+         * Called every time a page is loaded or dropped.
+         *
+         * @param window            the items now in memory, in order
+         * @param addedAtTop        how many items were put in front of what was there before
+         * @param removedFromTop    how many items were dropped from the front
+         */
+        void onWindowChanged(List<WishListItem> window, int addedAtTop, int removedFromTop);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.wishlist;
+
+import java.util.List;
+
+/**
+ * Everything the screens need to read and change a user's wish list, without caring where the
+ * list is stored.  FirebaseHelper is the real one and talks to Firestore.
+ * InMemoryWishListRepository keeps everything in memory, which makes it handy for tests and for
+ * measuring how fast the list code itself is without a network in the way.
+ *
+ * Changes are shown in getWishListItems() right away.  When they reach the backend depends on the
+ * implementation, flushPendingWrites() asks for anything waiting to be sent now.
+ */
+public interface WishListRepository {
+
+    /**
+     * Switches to another user's list, or to no list at all when uid is null.
+     */
+    void updateUid(String uid);
+
+    /**
+     * Reads the current user's list.
+     *
+     * @param firestoreCallback     called with the items each time the list is read
+     */
+    void attachReadDataToUser(FirestoreCallback firestoreCallback);
+
+    void addData(WishListItem w);
+
+    void editData(WishListItem w);
+
+    void deleteData(WishListItem w);
+
+    void flushPendingWrites();
+
+    /**
+     * @return  the list as of the last change, read only
+     */
+    List<WishListItem> getWishListItems();
+
+    /**
+     * @return  the last published copy of the list, with its version.  safe from any thread
+     */
+    WishListSnapshot getSnapshot();
+
+    void addListObserver(ListObserver observer);
+
+    void removeListObserver(ListObserver observer);
+
+//https://stackoverflow.com/questions/48499310/how-to-return-a-documentsnapshot-as-a-result-of-a-method/48500679#48500679
+    interface FirestoreCallback {
+        // we use the list of the data type we are working with in firebase
+        void onCallback(List<WishListItem> myList);
+    }
+
+    interface ListObserver {
+        // FirebaseHelper always calls this on the main thread
+        void onListChanged(WishListSnapshot snapshot);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.wishlist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A copy of the wish list as it was at one moment.  FirebaseHelper keeps changing its own list on
+ * the main thread, and every time it does it publishes a new WishListSnapshot.  A snapshot never
+ * changes after it is made, so any screen or thread can hold on to one and loop over it without
+ * locking and without it being cleared out from under them.  The items in it don't change
+ * either: FirebaseHelper replaces an item with a changed copy instead of changing it, so a
+ * snapshot saved by WishListCache on its writer thread is the same one the screens are showing.
+ *
+ * The version goes up by one with every snapshot, so a reader can tell if what it has is stale.
+ * FirebaseHelper's snapshots also say which items changed since the one before, so a screen that
+ * only shows part of the list (WishListPager) can update just those instead of looking at all of it.
+ */
+public class WishListSnapshot {
+    public static final WishListSnapshot EMPTY =
+            new WishListSnapshot(0, Collections.<WishListItem>emptyList(), null);
+
+    private final long version;
+    private final List<WishListItem> items;
+    private final Map<String, WishListItem> changes;
+
+    private WishListSnapshot(long version, List<WishListItem> items, Map<String, WishListItem> changes) {
+        this.version = version;
+        this.items = items;
+        this.changes = changes;
+    }
+
+    /**
+     * @param version   one more than the last snapshot's version
+     * @param items     the list to copy, it can keep changing after this returns
+     */
+    public static WishListSnapshot of(long version, List<WishListItem> items) {
+        return of(version, items, null);
+    }
+
+    /**
+     * @param changes   what changed since the last snapshot, see getChanges().  null if unknown.
+     *                  it is kept as is, so it must not change after this
+     */
+    public static WishListSnapshot of(long version, List<WishListItem> items,
+                                      Map<String, WishListItem> changes) {
+        return new WishListSnapshot(version, Collections.unmodifiableList(new ArrayList<>(items)),
+                changes);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return  the items, read only
+     */
+    public List<WishListItem> getItems() {
+        return items;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @return  docID -> the item as it is in this snapshot, or null if it was removed, for every
+     *          item that changed since the snapshot before this one.  null when that isn't known
+     *          (e.g. after a full read or a change of user), then anything may have changed
+     */
+    public Map<String, WishListItem> getChanges() {
+        return changes;
+    }
+
+    public boolean isNewerThan(WishListSnapshot other) {
+        return other == null || version > other.version;
+    }
+
+    @Override
+    public String toString() {
+        return "WishListSnapshot{" +
+                "version=" + version +
+                ", size=" + items.size() +
+                '}';
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.wishlist;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds writes for a short time before they are sent so that several changes to the same
+ * document turn into one write.  For example, adding an item and then editing it is sent as one
+ * set(), editing it three times is sent as one update() with all the changed fields, and
+ * editing then deleting it is just a delete.  Adding then deleting an item that was never sent
+ * means nothing has to be sent at all.
+ *
+ * This class only does the bookkeeping, FirebaseHelper decides when to flush and does the
+ * actual writing.
+ */
+public class WriteBuffer {
+
+    /**
+     * What will be sent for one document when the buffer is flushed.
+     * ADD means the whole item is set(), EDIT means update() of the fields in the mask.
+     */
+    public static class BufferedWrite {
+        private PendingMutation.Type type;
+        private WishListItem item;
+        private int mask;
+        // every local change that was folded into this write, oldest first, so they can all be
+        // confirmed or undone together
+        private final ArrayList<PendingMutation> mutations = new ArrayList<>();
+
+        BufferedWrite(PendingMutation mutation) {
+            this.type = mutation.getType();
+            this.item = mutation.getItem();
+            this.mask = maskFor(mutation);
+            mutations.add(mutation);
+        }
+
+        public PendingMutation.Type getType() {
+            return type;
+        }
+
+        public WishListItem getItem() {
+            return item;
+        }
+
+        public int getMask() {
+            return mask;
+        }
+
+        public List<PendingMutation> getMutations() {
+            return mutations;
+        }
+
+        /**
+         * @return  the document data this write sends: the whole item for an ADD, only the
+         *          fields in the mask for an EDIT, null for a DELETE
+         */
+        public Map<String, Object> getData() {
+            switch (type) {
+                case ADD:
+                    return WishListItemMapper.toMap(item);
+                case EDIT:
+                    return WishListItemMapper.toMap(item, mask);
+                default:
+                    return null;
+            }
+        }
+    }
+
+    // docID -> write, in the order each document was first touched
+    private final LinkedHashMap<String, BufferedWrite> writes = new LinkedHashMap<>();
+
+    /**
+     * Folds a change into the buffer.
+     *
+     * @param mutation  the change, already applied to the local list
+     * @return  changes that cancelled out and need no write at all (an add followed by a delete
+     *          of the same item).  these can be treated as done right away
+     */
+    public List<PendingMutation> put(PendingMutation mutation) {
+        ArrayList<PendingMutation> cancelled = new ArrayList<>();
+        String docId = mutation.getItem().getDocID();
+        BufferedWrite existing = writes.get(docId);
+        if (existing == null) {
+            writes.put(docId, new BufferedWrite(mutation));
+            return cancelled;
+        }
+
+        existing.mutations.add(mutation);
+        switch (mutation.getType()) {
+            case ADD:
+                // delete then add again with the same docID: just save the new version
+                existing.type = PendingMutation.Type.ADD;
+                existing.item = mutation.getItem();
+                existing.mask = WishListItemMapper.MASK_ALL;
+                break;
+            case EDIT:
+                if (existing.type == PendingMutation.Type.DELETE) {
+                    // editing something we are about to delete changes nothing
+                    break;
+                }
+                // an add stays an add (with the newest version of the item), edits pile up
+                existing.item = mutation.getItem();
+                existing.mask |= maskFor(mutation);
+                break;
+            case DELETE:
+                if (existing.mutations.get(0).getType() == PendingMutation.Type.ADD) {
+                    // the document was never written, so there is nothing to delete
+                    writes.remove(docId);
+                    cancelled.addAll(existing.mutations);
+                }
+                else {
+                    existing.type = PendingMutation.Type.DELETE;
+                    existing.item = mutation.getItem();
+                }
+                break;
+        }
+        return cancelled;
+    }
+
+    public int size() {
+        return writes.size();
+    }
+
+    public boolean isEmpty() {
+        return writes.isEmpty();
+    }
+
+    /**
+     * @return  every buffered write, in order, leaving the buffer empty
+     */
+    public List<BufferedWrite> drain() {
+        ArrayList<BufferedWrite> drained = new ArrayList<>(writes.values());
+        writes.clear();
+        return drained;
+    }
+
+    private static int maskFor(PendingMutation mutation) {
+        if (mutation.getType() == PendingMutation.Type.EDIT) {
+            int dirty = mutation.getItem().getDirtyFields();
+            // an edit with no tracked fields (e.g. a brand new object) sends everything
+            return dirty != 0 ? dirty : WishListItemMapper.MASK_ALL;
+        }
+        return WishListItemMapper.MASK_ALL;
+    }
+}
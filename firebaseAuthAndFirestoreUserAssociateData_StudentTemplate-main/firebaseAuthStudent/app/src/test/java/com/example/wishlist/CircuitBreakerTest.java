@@ -0,0 +1,95 @@
+package com.example.wishlist;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the circuit breaker, on a clock the test moves by hand.
+ */
+public class CircuitBreakerTest {
+    private long now;
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        now = 1000;
+        breaker = new CircuitBreaker(3, 500, new CircuitBreaker.Clock() {
+            @Override
+            public long nowMillis() {
+                return now;
+            }
+        });
+    }
+
+    @Test
+    public void opensAfterTheThresholdOfFailuresInARow() {
+        breaker.onFailure();
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(500, breaker.millisUntilRetry());
+    }
+
+    @Test
+    public void aSuccessResetsTheCount() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void letsOneTrialThroughAfterTheWait() {
+        openIt();
+        now += 500;
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // only the one trial until it reports back
+        assertFalse(breaker.allowRequest());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void aFailedTrialOpensItAgain() {
+        openIt();
+        now += 500;
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(500, breaker.millisUntilRetry());
+    }
+
+    @Test
+    public void aTrialThatEndsWithoutAVerdictLetsTheNextOneThrough() {
+        openIt();
+        now += 500;
+        assertTrue(breaker.allowRequest());
+
+        // e.g. the trial write was rejected as permission denied
+        breaker.onNeutral();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+    }
+
+    private void openIt() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+    }
+}
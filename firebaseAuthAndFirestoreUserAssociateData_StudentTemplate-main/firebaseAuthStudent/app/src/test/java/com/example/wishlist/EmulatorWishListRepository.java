@@ -0,0 +1,399 @@
+package com.example.wishlist;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A WishListRepository for local JVM tests that stores the list in the Firestore emulator
+ * ("firebase emulators:start", see firebase.json).  The Android Firestore SDK only runs on a device,
+ * so this talks to the emulator's REST API instead, using the same document paths and field names
+ * as FirebaseHelper.
+ *
+ * Writes take the same path as in FirebaseHelper up to the network: they are folded together in a
+ * WriteBuffer, and each document gets the data WriteBuffer.BufferedWrite.getData() builds for
+ * FirebaseHelper's WriteBatch (set() for an add, update() of the changed fields for an edit).  Only
+ * the last step, the batch itself, is a REST commit here.  Each write is sent right away, like
+ * FirebaseHelper with setWriteBuffering(0, 1), and every call blocks until the emulator answers,
+ * which makes the timings easy to read.
+ *
+ * The emulator skips the security rules for the "owner" token, so no sign in is needed.  signUp()
+ * makes real accounts in the Auth emulator when a test wants the same uids the app would get.
+ */
+public class EmulatorWishListRepository implements WishListRepository {
+    public static final String DEFAULT_HOST = "localhost:8080";
+    public static final String DEFAULT_PROJECT = "demo-wishlist";
+    public static final String DEFAULT_AUTH_HOST = "localhost:9099";
+    // the same limit as FirebaseHelper.MAX_BATCH_SIZE, Firestore won't take more in one commit
+    public static final int MAX_BATCH_SIZE = 500;
+
+    private final String host;
+    private final String authHost;
+    private final String project;
+    private final ArrayList<ListObserver> listObservers = new ArrayList<>();
+    // what we last read or wrote, by docID.  copies, so the caller changing their item later
+    // can't change a snapshot we already published
+    private final LinkedHashMap<String, WishListItem> items = new LinkedHashMap<>();
+    private final WriteBuffer writeBuffer = new WriteBuffer();
+    private String uid;
+    private long version = 0;
+    private WishListSnapshot published = WishListSnapshot.EMPTY;
+
+    public EmulatorWishListRepository() {
+        this(hostFromEnvironment("FIRESTORE_EMULATOR_HOST", DEFAULT_HOST), DEFAULT_PROJECT);
+    }
+
+    /**
+     * @param host      host:port of the Firestore emulator
+     * @param project   any project id, the emulator keeps each one separate
+     */
+    public EmulatorWishListRepository(String host, String project) {
+        this(host, hostFromEnvironment("FIREBASE_AUTH_EMULATOR_HOST", DEFAULT_AUTH_HOST), project);
+    }
+
+    /**
+     * @param authHost  host:port of the Auth emulator
+     */
+    public EmulatorWishListRepository(String host, String authHost, String project) {
+        this.host = host;
+        this.authHost = authHost;
+        this.project = project;
+    }
+
+    /**
+     * @return  true if something answers on the emulator's port, so tests can skip themselves
+     *          when it isn't running
+     */
+    public boolean isEmulatorRunning() {
+        try {
+            HttpURLConnection connection = open("http://" + host + "/", "GET");
+            connection.setConnectTimeout(500);
+            connection.getResponseCode();
+            connection.disconnect();
+            return true;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes every document in the emulator for this project.
+     */
+    public synchronized void clearEmulator() throws IOException {
+        send("DELETE", "http://" + host + "/emulator/v1/projects/" + project
+                + "/databases/(default)/documents", null);
+    }
+
+    /**
+     * Deletes every account in the Auth emulator for this project.
+     */
+    public void clearAuthEmulator() throws IOException {
+        send("DELETE", "http://" + authHost + "/emulator/v1/projects/" + project + "/accounts", null);
+    }
+
+    /**
+     * Makes an account in the Auth emulator, like FirebaseAuth.createUserWithEmailAndPassword.
+     *
+     * @return  the new user's uid
+     */
+    public String signUp(String email, String password) throws IOException {
+        try {
+            JSONObject body = new JSONObject()
+                    .put("email", email)
+                    .put("password", password)
+                    .put("returnSecureToken", true);
+            // the emulator takes any API key
+            JSONObject account = new JSONObject(send("POST", "http://" + authHost
+                    + "/identitytoolkit.googleapis.com/v1/accounts:signUp?key=fake-api-key", body.toString()));
+            return account.getString("localId");
+        }
+        catch (JSONException e) {
+            throw new IOException("Unexpected answer from the Auth emulator", e);
+        }
+    }
+
+    /**
+     * The same users/{uid} document FirebaseHelper.addUserToFirestore writes.
+     */
+    public void addUserToFirestore(String name, String newUID) {
+        try {
+            JSONObject fields = new JSONObject().put("name", stringValue(name));
+            JSONObject write = new JSONObject().put("update", new JSONObject()
+                    .put("name", "projects/" + project + "/databases/(default)/documents/users/" + newUID)
+                    .put("fields", fields));
+            commit(write);
+        }
+        catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized void updateUid(String uid) {
+        this.uid = uid;
+        items.clear();
+        changed();
+    }
+
+    @Override
+    public synchronized void attachReadDataToUser(FirestoreCallback firestoreCallback) {
+        if (uid == null) {
+            return;
+        }
+        try {
+            items.clear();
+            String pageToken = null;
+            do {
+                String url = documentsUrl() + "/" + collectionPath() + "?pageSize=300"
+                        + (pageToken != null ? "&pageToken=" + URLEncoder.encode(pageToken, "UTF-8") : "");
+                JSONObject page = new JSONObject(send("GET", url, null));
+                JSONArray documents = page.optJSONArray("documents");
+                for (int i = 0; documents != null && i < documents.length(); i++) {
+                    WishListItem w = fromDocument(documents.getJSONObject(i));
+                    items.put(w.getDocID(), w);
+                }
+                pageToken = page.optString("nextPageToken", null);
+            } while (pageToken != null && !pageToken.isEmpty());
+        }
+        catch (IOException | JSONException e) {
+            throw new IllegalStateException("Reading from the emulator failed", e);
+        }
+        changed();
+        firestoreCallback.onCallback(published.getItems());
+    }
+
+    @Override
+    public synchronized void addData(WishListItem w) {
+        if (uid == null) {
+            return;
+        }
+        if (w.getDocID() == null || w.getDocID().equals(WishListItem.NO_DOC_ID)) {
+            w.setDocID(UUID.randomUUID().toString());
+        }
+        write(PendingMutation.Type.ADD, w);
+    }
+
+    @Override
+    public synchronized void editData(WishListItem w) {
+        // same as FirebaseHelper, with no changed fields there is nothing to send
+        if (uid == null || w.getDirtyFields() == 0) {
+            return;
+        }
+        write(PendingMutation.Type.EDIT, w);
+    }
+
+    @Override
+    public synchronized void deleteData(WishListItem w) {
+        if (uid == null) {
+            return;
+        }
+        write(PendingMutation.Type.DELETE, w);
+    }
+
+    @Override
+    public synchronized void flushPendingWrites() {
+        List<WriteBuffer.BufferedWrite> writes = writeBuffer.drain();
+        try {
+            for (int start = 0; start < writes.size(); start += MAX_BATCH_SIZE) {
+                JSONArray batch = new JSONArray();
+                for (WriteBuffer.BufferedWrite write : writes.subList(start,
+                        Math.min(start + MAX_BATCH_SIZE, writes.size()))) {
+                    batch.put(toRestWrite(write));
+                }
+                commit(batch);
+            }
+        }
+        catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized List<WishListItem> getWishListItems() {
+        return published.getItems();
+    }
+
+    @Override
+    public synchronized WishListSnapshot getSnapshot() {
+        return published;
+    }
+
+    @Override
+    public synchronized void addListObserver(ListObserver observer) {
+        listObservers.add(observer);
+    }
+
+    @Override
+    public synchronized void removeListObserver(ListObserver observer) {
+        listObservers.remove(observer);
+    }
+
+    private void write(PendingMutation.Type type, WishListItem w) {
+        // like FirebaseHelper.applyLocally, the list keeps its own copy
+        WishListItem item = w.copy();
+        writeBuffer.put(new PendingMutation(type, item, null, -1));
+        flushPendingWrites();
+        if (type == PendingMutation.Type.DELETE) {
+            items.remove(item.getDocID());
+        }
+        else {
+            items.put(item.getDocID(), item);
+        }
+        changed();
+    }
+
+    private void changed() {
+        version++;
+        published = WishListSnapshot.of(version, new ArrayList<>(items.values()));
+        for (ListObserver observer : new ArrayList<>(listObservers)) {
+            observer.onListChanged(published);
+        }
+    }
+
+    private void commit(JSONObject write) throws JSONException {
+        commit(new JSONArray().put(write));
+    }
+
+    private void commit(JSONArray writes) throws JSONException {
+        JSONObject body = new JSONObject().put("writes", writes);
+        try {
+            send("POST", documentsUrl() + ":commit", body.toString());
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Writing to the emulator failed", e);
+        }
+    }
+
+    // what WriteBatch.set / update / delete send for one BufferedWrite
+    private JSONObject toRestWrite(WriteBuffer.BufferedWrite write) throws JSONException {
+        String name = documentName(write.getItem().getDocID());
+        if (write.getType() == PendingMutation.Type.DELETE) {
+            return new JSONObject().put("delete", name);
+        }
+        Map<String, Object> data = write.getData();
+        JSONObject fields = new JSONObject();
+        for (Map.Entry<String, Object> field : data.entrySet()) {
+            fields.put(field.getKey(), toValue(field.getValue()));
+        }
+        JSONObject rest = new JSONObject().put("update", new JSONObject()
+                .put("name", name)
+                .put("fields", fields));
+        if (write.getType() == PendingMutation.Type.EDIT) {
+            // update() only touches the fields it was given, and fails if the document is gone
+            rest.put("updateMask", new JSONObject().put("fieldPaths", new JSONArray(data.keySet())))
+                    .put("currentDocument", new JSONObject().put("exists", true));
+        }
+        return rest;
+    }
+
+    private static JSONObject toValue(Object value) throws JSONException {
+        if (value instanceof Number) {
+            // the REST API sends 64 bit integers as strings
+            return new JSONObject().put("integerValue", String.valueOf(value));
+        }
+        return stringValue(value == null ? null : value.toString());
+    }
+
+    private static JSONObject stringValue(String value) throws JSONException {
+        return new JSONObject().put("stringValue", value == null ? "" : value);
+    }
+
+    private static WishListItem fromDocument(JSONObject document) throws JSONException {
+        String name = document.getString("name");
+        String docId = name.substring(name.lastIndexOf('/') + 1);
+        JSONObject fields = document.optJSONObject("fields");
+        if (fields == null) {
+            fields = new JSONObject();
+        }
+        JSONObject priority = fields.optJSONObject(WishListItemMapper.FIELD_PRIORITY);
+        return new WishListItem(
+                stringField(fields, WishListItemMapper.FIELD_NAME),
+                stringField(fields, WishListItemMapper.FIELD_LOCATION),
+                priority != null ? Integer.parseInt(priority.optString("integerValue", "5")) : 5,
+                docId);
+    }
+
+    private static String stringField(JSONObject fields, String field) {
+        JSONObject value = fields.optJSONObject(field);
+        return value == null ? "" : value.optString("stringValue", "");
+    }
+
+    private String documentsUrl() {
+        return "http://" + host + "/v1/projects/" + project + "/databases/(default)/documents";
+    }
+
+    private String collectionPath() {
+        // the same place FirebaseHelper keeps each user's list
+        return "users/" + uid + "/myWishList";
+    }
+
+    private String documentName(String docId) {
+        return "projects/" + project + "/databases/(default)/documents/" + collectionPath() + "/" + docId;
+    }
+
+    private static HttpURLConnection open(String url, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Authorization", "Bearer owner");
+        return connection;
+    }
+
+    private static String send(String method, String url, String body) throws IOException {
+        HttpURLConnection connection = open(url, method);
+        try {
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int code = connection.getResponseCode();
+            InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+            String response = readAll(in);
+            if (code >= 400) {
+                throw new IOException(method + " " + url + " returned " + code + ": " + response);
+            }
+            return response;
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try (InputStream input = in) {
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String hostFromEnvironment(String variable, String defaultHost) {
+        // the Firebase tools set these when running tests with "firebase emulators:exec"
+        String host = System.getenv(variable);
+        return host != null && !host.isEmpty() ? host : defaultHost;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.wishlist;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs against the Firestore emulator from the plain JVM.  Start it first with
+ * "firebase emulators:start --project demo-wishlist", these tests are skipped when it isn't running.
+ */
+public class EmulatorWishListRepositoryTest {
+    private EmulatorWishListRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = new EmulatorWishListRepository();
+        assumeTrue("Firestore emulator is not running", repository.isEmulatorRunning());
+        repository.clearEmulator();
+    }
+
+    @Test
+    public void addEditDelete_roundTripThroughTheEmulator() {
+        repository.updateUid(UUID.randomUUID().toString());
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2);
+        repository.addData(w);
+        w.setItemName("Red bike");
+        repository.editData(w);
+
+        final WishListItem[] read = new WishListItem[1];
+        repository.attachReadDataToUser(new WishListRepository.FirestoreCallback() {
+            @Override
+            public void onCallback(List<WishListItem> myList) {
+                read[0] = myList.get(0);
+            }
+        });
+        assertEquals("Red bike", read[0].getItemName());
+        // the edit only sent the name, the rest is still what add wrote
+        assertEquals("Bike shop", read[0].getItemLocation());
+        assertEquals(2, read[0].getItemPriority());
+
+        repository.deleteData(w);
+        repository.attachReadDataToUser(new WishListRepository.FirestoreCallback() {
+            @Override
+            public void onCallback(List<WishListItem> myList) {
+                assertTrue(myList.isEmpty());
+            }
+        });
+    }
+
+    @Test
+    public void workload_emulator() {
+        List<RepositoryWorkload.Stats> results =
+                new RepositoryWorkload(200, 5).run(repository, "load-test");
+        InMemoryWishListRepositoryTest.assertWorkloadStats(results, 200, 5);
+    }
+}
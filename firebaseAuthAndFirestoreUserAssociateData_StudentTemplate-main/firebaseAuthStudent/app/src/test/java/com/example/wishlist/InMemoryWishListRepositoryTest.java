@@ -0,0 +1,114 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the in-memory WishListRepository, plus a run of the shared workload.
+ */
+public class InMemoryWishListRepositoryTest {
+    @Test
+    public void addEditDelete_showUpInTheSnapshot() {
+        InMemoryWishListRepository repository = new InMemoryWishListRepository();
+        repository.updateUid("user1");
+
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2);
+        repository.addData(w);
+        assertNotEquals(WishListItem.NO_DOC_ID, w.getDocID());
+        assertEquals(1, repository.getWishListItems().size());
+
+        WishListSnapshot beforeEdit = repository.getSnapshot();
+        w.setItemName("Red bike");
+        repository.editData(w);
+        assertTrue(repository.getSnapshot().isNewerThan(beforeEdit));
+        assertEquals("Red bike", repository.getWishListItems().get(0).getItemName());
+
+        repository.deleteData(w);
+        assertEquals(0, repository.getWishListItems().size());
+        // an old snapshot never changes, not even when the caller changes their item
+        assertEquals(1, beforeEdit.size());
+        assertEquals("Bike", beforeEdit.getItems().get(0).getItemName());
+        w.setItemLocation("Garage sale");
+        assertEquals("Bike shop", beforeEdit.getItems().get(0).getItemLocation());
+    }
+
+    @Test
+    public void eachUserHasTheirOwnList() {
+        InMemoryWishListRepository repository = new InMemoryWishListRepository();
+        repository.updateUid("user1");
+        repository.addData(new WishListItem("Bike", "Bike shop", 2));
+        repository.updateUid("user2");
+        assertTrue(repository.getWishListItems().isEmpty());
+        repository.updateUid("user1");
+        assertEquals(1, repository.getWishListItems().size());
+    }
+
+    @Test
+    public void observers_getEveryChange() {
+        InMemoryWishListRepository repository = new InMemoryWishListRepository();
+        repository.updateUid("user1");
+        final int[] calls = new int[1];
+        repository.addListObserver(new WishListRepository.ListObserver() {
+            @Override
+            public void onListChanged(WishListSnapshot snapshot) {
+                calls[0]++;
+            }
+        });
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2);
+        repository.addData(w);
+        repository.deleteData(w);
+        assertEquals(2, calls[0]);
+    }
+
+    @Test
+    public void observers_areCalledWithoutTheLockHeld() throws Exception {
+        final InMemoryWishListRepository repository = new InMemoryWishListRepository();
+        repository.updateUid("user1");
+        final int[] seen = new int[1];
+        repository.addListObserver(new WishListRepository.ListObserver() {
+            @Override
+            public void onListChanged(WishListSnapshot snapshot) {
+                // another thread reading the repository would wait forever if we still held it
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        seen[0] = repository.size();
+                    }
+                });
+                reader.start();
+                try {
+                    reader.join(5000);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                assertFalse(reader.isAlive());
+            }
+        });
+        repository.addData(new WishListItem("Bike", "Bike shop", 2));
+        assertEquals(1, seen[0]);
+    }
+
+    @Test
+    public void workload_inMemory() {
+        List<RepositoryWorkload.Stats> results =
+                new RepositoryWorkload(10000, 20).run(new InMemoryWishListRepository(), "load-test");
+        assertWorkloadStats(results, 10000, 20);
+    }
+
+    // every call was timed, and the numbers make sense.  how fast they were isn't checked here
+    static void assertWorkloadStats(List<RepositoryWorkload.Stats> results, int items, int reads) {
+        assertEquals(4, results.size());
+        assertEquals(items, results.get(0).count());
+        assertEquals(items, results.get(1).count());
+        assertEquals(reads, results.get(2).count());
+        assertEquals(items, results.get(3).count());
+        for (RepositoryWorkload.Stats stats : results) {
+            assertTrue(stats.opsPerSecond() > 0);
+            assertTrue(stats.percentileMicros(50) <= stats.percentileMicros(99));
+        }
+    }
+}
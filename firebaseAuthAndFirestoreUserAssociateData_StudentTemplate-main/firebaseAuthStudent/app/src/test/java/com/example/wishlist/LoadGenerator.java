@@ -0,0 +1,272 @@
+package com.example.wishlist;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Puts the emulators under the kind of load many accounts would: N users sign up, get their
+ * users/{uid} document, and then each does a random mix of adds, edits, deletes and full reads
+ * of their own myWishList.  The users run on a fixed number of threads, and the whole run can be
+ * held to a request rate.  Every call is timed in a WishListMetrics, the same histograms the app
+ * uses, so the report looks like the one in logcat.
+ *
+ * Everything goes to the local emulators through EmulatorWishListRepository, nothing leaves the
+ * machine.  Start them first with "firebase emulators:start --project demo-wishlist", then run
+ * LoadGeneratorTest with options like
+ *
+ *     -Dloadgen.users=100 -Dloadgen.concurrency=16 -Dloadgen.rate=500 -Dloadgen.ops=50 -Dloadgen.mix=40,30,10,20
+ *
+ * (mix is the percent of add, edit, delete and read).
+ */
+public class LoadGenerator {
+
+    public static class Config {
+        int users = 20;
+        int concurrency = 8;
+        // requests per second for the whole run, 0 for as fast as the emulators answer
+        int rate = 0;
+        int opsPerUser = 30;
+        int addPercent = 40, editPercent = 30, deletePercent = 10, readPercent = 20;
+        long seed = 42;
+
+        /**
+         * Reads --name=value arguments, anything not given keeps its default.
+         */
+        public static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Expected --name=value but got " + arg);
+                }
+                config.set(parts[0], parts[1]);
+            }
+            return config;
+        }
+
+        /**
+         * Reads loadgen.name system properties, so gradle can pass them with -Dloadgen.users=100
+         */
+        public static Config fromSystemProperties() {
+            Config config = new Config();
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith("loadgen.")) {
+                    config.set(name.substring("loadgen.".length()), System.getProperty(name));
+                }
+            }
+            return config;
+        }
+
+        void set(String name, String value) {
+            switch (name) {
+                case "users":
+                    users = Integer.parseInt(value);
+                    break;
+                case "concurrency":
+                    concurrency = Integer.parseInt(value);
+                    break;
+                case "rate":
+                    rate = Integer.parseInt(value);
+                    break;
+                case "ops":
+                    opsPerUser = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "mix":
+                    String[] percents = value.split(",");
+                    if (percents.length != 4) {
+                        throw new IllegalArgumentException("mix needs 4 percents: add,edit,delete,read");
+                    }
+                    addPercent = Integer.parseInt(percents[0].trim());
+                    editPercent = Integer.parseInt(percents[1].trim());
+                    deletePercent = Integer.parseInt(percents[2].trim());
+                    readPercent = Integer.parseInt(percents[3].trim());
+                    if (addPercent + editPercent + deletePercent + readPercent != 100) {
+                        throw new IllegalArgumentException("mix has to add up to 100: " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "users=%d concurrency=%d rate=%s ops=%d mix=%d,%d,%d,%d",
+                    users, concurrency, rate == 0 ? "unlimited" : rate + "/s", opsPerUser,
+                    addPercent, editPercent, deletePercent, readPercent);
+        }
+    }
+
+    /**
+     * What one run did.
+     */
+    public static class Report {
+        private final Config config;
+        private final WishListMetrics metrics;
+        private final long requests;
+        private final int errors;
+        private final String lastError;
+        private final long elapsedNanos;
+
+        Report(Config config, WishListMetrics metrics, long requests, int errors, String lastError,
+               long elapsedNanos) {
+            this.config = config;
+            this.metrics = metrics;
+            this.requests = requests;
+            this.errors = errors;
+            this.lastError = lastError;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public WishListMetrics getMetrics() {
+            return metrics;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return  which user stopped last and why, null if none did
+         */
+        public String getLastError() {
+            return lastError;
+        }
+
+        public double requestsPerSecond() {
+            return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s%n%d requests in %.1f s, %.0f req/s, %d error(s)%s%n%s",
+                    config, requests, elapsedNanos / 1e9, requestsPerSecond(), errors,
+                    lastError == null ? "" : ", last: " + lastError, metrics.dump());
+        }
+    }
+
+    private final Config config;
+    private final WishListMetrics metrics = new WishListMetrics();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicReference<String> lastError = new AtomicReference<>();
+    // the time the next request may start at, when the rate is limited
+    private final AtomicLong nextSlot = new AtomicLong();
+
+    public LoadGenerator(Config config) {
+        this.config = config;
+    }
+
+    public Report run() throws InterruptedException {
+        ExecutorService threads = Executors.newFixedThreadPool(config.concurrency);
+        long start = System.nanoTime();
+        nextSlot.set(start);
+        for (int u = 0; u < config.users; u++) {
+            final int user = u;
+            threads.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runUser(user, new Random(config.seed + user));
+                    }
+                    catch (RuntimeException | IOException e) {
+                        // one broken user shouldn't stop the others
+                        // the report says how many and the last one
+                        errors.incrementAndGet();
+                        lastError.set("user " + user + " stopped: " + e);
+                    }
+                }
+            });
+        }
+        threads.shutdown();
+        threads.awaitTermination(1, TimeUnit.HOURS);
+        return new Report(config, metrics, requests.get(), errors.get(), lastError.get(),
+                System.nanoTime() - start);
+    }
+
+    private void runUser(int user, Random random) throws IOException {
+        // each user has their own connection to the emulators, just like each phone would
+        EmulatorWishListRepository repository = new EmulatorWishListRepository();
+        String name = "loadgen" + user + "-" + random.nextInt(1000000);
+
+        // two requests, timed the way the app times them: AUTH is only the sign up
+        long start = beginRequest();
+        String uid = repository.signUp(name + "@example.com", "password" + user);
+        metrics.record(WishListMetrics.Op.AUTH, start);
+        start = beginRequest();
+        repository.addUserToFirestore(name, uid);
+        metrics.record(WishListMetrics.Op.USER, start);
+        repository.updateUid(uid);
+
+        ArrayList<WishListItem> items = new ArrayList<>();
+        for (int i = 0; i < config.opsPerUser; i++) {
+            int pick = random.nextInt(100);
+            // there is nothing to edit or delete until something was added
+            if (items.isEmpty() || pick < config.addPercent) {
+                WishListItem w = new WishListItem("Item " + i, "Store " + random.nextInt(20),
+                        random.nextInt(10) + 1);
+                start = beginRequest();
+                repository.addData(w);
+                metrics.record(WishListMetrics.Op.ADD, start);
+                items.add(w);
+            }
+            else if (pick < config.addPercent + config.editPercent) {
+                WishListItem w = items.get(random.nextInt(items.size()));
+                w.setItemLocation("Moved " + i);
+                start = beginRequest();
+                repository.editData(w);
+                metrics.record(WishListMetrics.Op.EDIT, start);
+            }
+            else if (pick < config.addPercent + config.editPercent + config.deletePercent) {
+                WishListItem w = items.remove(random.nextInt(items.size()));
+                start = beginRequest();
+                repository.deleteData(w);
+                metrics.record(WishListMetrics.Op.DELETE, start);
+            }
+            else {
+                start = beginRequest();
+                repository.attachReadDataToUser(new WishListRepository.FirestoreCallback() {
+                    @Override
+                    public void onCallback(List<WishListItem> myList) {
+                        metrics.countReads(myList.size(), 0);
+                    }
+                });
+                metrics.record(WishListMetrics.Op.READ, start);
+            }
+        }
+    }
+
+    // waits for this request's turn when the rate is limited.  returns the time it started
+    private long beginRequest() {
+        requests.incrementAndGet();
+        if (config.rate > 0) {
+            long slot = nextSlot.getAndAdd(TimeUnit.SECONDS.toNanos(1) / config.rate);
+            long wait = slot - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs the load generator against the emulators, with options from -Dloadgen.* properties, e.g.
+ *
+ *     firebase emulators:exec --project demo-wishlist \
+ *         "./gradlew testDebugUnitTest --tests '*LoadGeneratorTest*' -Dloadgen.users=100 -Dloadgen.rate=500"
+ *
+ * The load test is skipped when the emulators aren't running.  Its report is written to
+ * build/loadgen-report.txt.
+ */
+public class LoadGeneratorTest {
+    @Test
+    public void config_readsEveryOption() {
+        LoadGenerator.Config config = LoadGenerator.Config.parse(new String[] {
+                "--users=100", "--concurrency=16", "--rate=500", "--ops=50", "--mix=25,25,25,25"});
+        assertEquals(100, config.users);
+        assertEquals(16, config.concurrency);
+        assertEquals(500, config.rate);
+        assertEquals(50, config.opsPerUser);
+        assertEquals(25, config.readPercent);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void config_rejectsAMixThatIsNot100Percent() {
+        LoadGenerator.Config.parse(new String[] {"--mix=50,50,50,50"});
+    }
+
+    @Test
+    public void run_manyUsersAgainstTheEmulators() throws Exception {
+        EmulatorWishListRepository emulator = new EmulatorWishListRepository();
+        assumeTrue("Firestore emulator is not running", emulator.isEmulatorRunning());
+        emulator.clearEmulator();
+        emulator.clearAuthEmulator();
+
+        LoadGenerator.Config config = LoadGenerator.Config.fromSystemProperties();
+        LoadGenerator.Report report = new LoadGenerator(config).run();
+        writeReport(report);
+
+        assertEquals(report.getLastError(), 0, report.getErrors());
+        // a sign up and a users/{uid} write per user, plus their ops
+        assertEquals((long) config.users * (config.opsPerUser + 2), report.getRequests());
+        assertEquals(config.users, report.getMetrics().getHistogram(WishListMetrics.Op.AUTH).getCount());
+        assertEquals(config.users, report.getMetrics().getHistogram(WishListMetrics.Op.USER).getCount());
+    }
+
+    // gradle runs the tests in the module folder, so this ends up in app/build
+    private static void writeReport(LoadGenerator.Report report) throws IOException {
+        File file = new File("build", "loadgen-report.txt");
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(report.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.wishlist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the same add / edit / read / delete flow against any WishListRepository and times every
+ * call, so the in-memory engine and the emulator can be compared with the same numbers.
+ */
+public class RepositoryWorkload {
+
+    /**
+     * Latencies for one kind of call.
+     */
+    public static class Stats {
+        private final String name;
+        private final long[] nanos;
+        private final long totalNanos;
+
+        Stats(String name, long[] nanos, long totalNanos) {
+            this.name = name;
+            this.nanos = nanos.clone();
+            Arrays.sort(this.nanos);
+            this.totalNanos = totalNanos;
+        }
+
+        public int count() {
+            return nanos.length;
+        }
+
+        public double opsPerSecond() {
+            return totalNanos == 0 ? 0 : nanos.length * 1e9 / totalNanos;
+        }
+
+        /**
+         * @param percent   e.g. 50 for the median, 99 for p99
+         */
+        public long percentileMicros(double percent) {
+            if (nanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percent / 100.0 * nanos.length) - 1;
+            return nanos[Math.max(0, Math.min(index, nanos.length - 1))] / 1000;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-6s n=%d  %.0f ops/s  p50=%dus  p99=%dus",
+                    name, count(), opsPerSecond(), percentileMicros(50), percentileMicros(99));
+        }
+    }
+
+    private final int items;
+    private final int reads;
+
+    /**
+     * @param items     how many items to add, then edit, then delete
+     * @param reads     how many full reads of the list to do in between
+     */
+    public RepositoryWorkload(int items, int reads) {
+        this.items = items;
+        this.reads = reads;
+    }
+
+    /**
+     * @return  stats for add, edit, read and delete, in that order
+     */
+    public List<Stats> run(WishListRepository repository, String uid) {
+        repository.updateUid(uid);
+        ArrayList<WishListItem> added = new ArrayList<>(items);
+
+        long[] times = new long[items];
+        long start = System.nanoTime();
+        for (int i = 0; i < items; i++) {
+            WishListItem w = new WishListItem("Item " + i, "Store " + (i % 20), i % 10 + 1);
+            long t = System.nanoTime();
+            repository.addData(w);
+            times[i] = System.nanoTime() - t;
+            added.add(w);
+        }
+        repository.flushPendingWrites();
+        Stats add = new Stats("add", times, System.nanoTime() - start);
+
+        times = new long[items];
+        start = System.nanoTime();
+        for (int i = 0; i < items; i++) {
+            WishListItem w = added.get(i);
+            w.setItemLocation("Moved " + i);
+            long t = System.nanoTime();
+            repository.editData(w);
+            times[i] = System.nanoTime() - t;
+        }
+        repository.flushPendingWrites();
+        Stats edit = new Stats("edit", times, System.nanoTime() - start);
+
+        times = new long[reads];
+        start = System.nanoTime();
+        final int[] seen = new int[1];
+        for (int i = 0; i < reads; i++) {
+            long t = System.nanoTime();
+            repository.attachReadDataToUser(new WishListRepository.FirestoreCallback() {
+                @Override
+                public void onCallback(List<WishListItem> myList) {
+                    seen[0] = myList.size();
+                }
+            });
+            times[i] = System.nanoTime() - t;
+        }
+        Stats read = new Stats("read", times, System.nanoTime() - start);
+        if (reads > 0 && seen[0] != items) {
+            throw new IllegalStateException("read " + seen[0] + " items, expected " + items);
+        }
+
+        times = new long[items];
+        start = System.nanoTime();
+        for (int i = 0; i < items; i++) {
+            long t = System.nanoTime();
+            repository.deleteData(added.get(i));
+            times[i] = System.nanoTime() - t;
+        }
+        repository.flushPendingWrites();
+        Stats delete = new Stats("delete", times, System.nanoTime() - start);
+
+        return Arrays.asList(add, edit, read, delete);
+    }
+}
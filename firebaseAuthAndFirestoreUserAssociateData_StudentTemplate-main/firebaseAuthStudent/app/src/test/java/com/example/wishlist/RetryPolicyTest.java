@@ -0,0 +1,47 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for how long FirebaseHelper waits between retries.
+ */
+public class RetryPolicyTest {
+    @Test
+    public void backoffMs_doublesUpToTheMaxWithJitter() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000, 5000);
+        Random random = new Random(1);
+        long[] caps = {100, 200, 400, 800, 1000, 1000};
+        for (int i = 0; i < caps.length; i++) {
+            for (int n = 0; n < 50; n++) {
+                long wait = policy.backoffMs(i + 1, random);
+                // somewhere between half and all of the cap
+                assertTrue("try " + (i + 1) + " waited " + wait, wait >= caps[i] / 2 && wait <= caps[i]);
+            }
+        }
+    }
+
+    @Test
+    public void backoffMs_doesNotOverflowAfterManyTries() {
+        RetryPolicy policy = new RetryPolicy(100, 200, 5000, 5000);
+        long wait = policy.backoffMs(80, new Random(1));
+        assertTrue(wait >= 2500 && wait <= 5000);
+    }
+
+    @Test
+    public void canRetry_countsTheFirstTry() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000, 5000);
+        assertTrue(policy.canRetry(1));
+        assertTrue(policy.canRetry(2));
+        assertFalse(policy.canRetry(3));
+        assertFalse(RetryPolicy.NO_RETRIES.canRetry(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsAMaxBelowTheFirstWait() {
+        new RetryPolicy(3, 1000, 100, 5000);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the binary import / export format.
+ */
+public class WishListArchiveTest {
+    @Test
+    public void roundTrip_keepsEveryFieldOfEveryItem() throws IOException {
+        File file = File.createTempFile("wishlist", ".wlst");
+        file.deleteOnExit();
+        int items = 100000;
+
+        try (WishListArchive.Writer writer = WishListArchive.Writer.create(file)) {
+            for (int i = 0; i < items; i++) {
+                writer.write(new WishListItem("Item " + i, "Storé " + (i % 7), i % 11 - 1, "doc" + i));
+            }
+            assertEquals(items, writer.getCount());
+        }
+
+        try (WishListArchive.Reader reader = WishListArchive.Reader.open(file)) {
+            for (int i = 0; i < items; i++) {
+                WishListItem w = reader.next();
+                assertEquals("Item " + i, w.getItemName());
+                assertEquals("Storé " + (i % 7), w.getItemLocation());
+                assertEquals(i % 11 - 1, w.getItemPriority());
+                assertEquals("doc" + i, w.getDocID());
+            }
+            assertNull(reader.next());
+            assertEquals(items, reader.getCount());
+        }
+    }
+
+    @Test
+    public void records_stayCompact() throws IOException {
+        File file = File.createTempFile("wishlist", ".wlst");
+        file.deleteOnExit();
+        try (WishListArchive.Writer writer = WishListArchive.Writer.create(file)) {
+            writer.write(new WishListItem("Bike", "Shop", 2, "abc"));
+        }
+        // 5 header bytes, then length, priority and three 1 byte lengths plus 11 bytes of text
+        assertEquals(5 + 1 + 1 + 3 + 11, file.length());
+    }
+
+    @Test
+    public void anItemWithNoDocId_comesBackUnsaved() throws IOException {
+        File file = File.createTempFile("wishlist", ".wlst");
+        file.deleteOnExit();
+        try (WishListArchive.Writer writer = WishListArchive.Writer.create(file)) {
+            writer.write(new WishListItem("Bike", "Bike shop", 2, null));
+        }
+        try (WishListArchive.Reader reader = WishListArchive.Reader.open(file)) {
+            assertEquals(WishListItem.NO_DOC_ID, reader.next().getDocID());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void next_rejectsADocIdThatIsAPath() throws IOException {
+        File file = File.createTempFile("wishlist", ".wlst");
+        file.deleteOnExit();
+        try (WishListArchive.Writer writer = WishListArchive.Writer.create(file)) {
+            writer.write(new WishListItem("Bike", "Bike shop", 2, "a/b"));
+        }
+        try (WishListArchive.Reader reader = WishListArchive.Reader.open(file)) {
+            reader.next();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void next_failsOnATruncatedFile() throws IOException {
+        File file = File.createTempFile("wishlist", ".wlst");
+        file.deleteOnExit();
+        try (WishListArchive.Writer writer = WishListArchive.Writer.create(file)) {
+            writer.write(new WishListItem("Bike", "Bike shop", 2, "doc1"));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        try (WishListArchive.Reader reader = WishListArchive.Reader.open(file)) {
+            reader.next();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsFilesThatAreNotArchives() throws IOException {
+        File file = File.createTempFile("wishlist", ".txt");
+        file.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeBytes("itemName,itemLocation\n");
+        }
+        WishListArchive.Reader.open(file).close();
+    }
+}
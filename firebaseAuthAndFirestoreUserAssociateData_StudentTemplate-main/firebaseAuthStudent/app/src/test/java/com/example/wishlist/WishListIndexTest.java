@@ -0,0 +1,121 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the in-memory search index.
+ */
+public class WishListIndexTest {
+    @Test
+    public void searchByName_matchesTheStartOfAnyWord() {
+        WishListIndex index = new WishListIndex();
+        index.put(new WishListItem("Red Bike", "Bike shop", 2, "doc1"));
+        index.put(new WishListItem("Bicycle bell", "Target", 3, "doc2"));
+        index.put(new WishListItem("Lamp", "Target", 1, "doc3"));
+
+        assertEquals(2, index.searchByName("bi", 10).size());
+        assertEquals(1, index.searchByName("BIKE", 10).size());
+        assertEquals(1, index.searchByName("bi", 1).size());
+        assertTrue(index.searchByName("car", 10).isEmpty());
+    }
+
+    @Test
+    public void searchByName_needsEveryWordTyped() {
+        WishListIndex index = new WishListIndex();
+        index.put(new WishListItem("Red Bike", "Bike shop", 2, "doc1"));
+        index.put(new WishListItem("Bike", "Bike shop", 3, "doc2"));
+        index.put(new WishListItem("Red lamp", "Target", 1, "doc3"));
+
+        List<WishListItem> found = index.searchByName("red bi", 10);
+        assertEquals(1, found.size());
+        assertEquals("doc1", found.get(0).getDocID());
+        // the order of the words doesn't matter
+        assertEquals(1, index.searchByName("BI  red", 10).size());
+        assertTrue(index.searchByName("red car", 10).isEmpty());
+    }
+
+    @Test
+    public void put_replacesTheOldVersionEverywhere() {
+        WishListIndex index = new WishListIndex();
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "doc1");
+        index.put(w);
+        // changed with the setters after it was indexed
+        w.setItemName("Lamp");
+        w.setItemLocation("Target");
+        w.setItemPriority(7);
+        index.put(w);
+
+        assertEquals(1, index.size());
+        assertTrue(index.searchByName("bike", 10).isEmpty());
+        assertTrue(index.findByLocation("shop").isEmpty());
+        assertTrue(index.findByPriority(2, 2).isEmpty());
+        assertSame(w, index.findByLocation("target").get(0));
+        assertSame(w, index.findByPriority(5, 8).get(0));
+    }
+
+    @Test
+    public void remove_takesItOutOfEveryTable() {
+        WishListIndex index = new WishListIndex();
+        index.put(new WishListItem("Bike", "Bike shop", 2, "doc1"));
+        index.remove("doc1");
+
+        assertFalse(index.contains("doc1"));
+        assertNull(index.get("doc1"));
+        assertTrue(index.searchByName("bike", 10).isEmpty());
+        assertTrue(index.findByLocation("shop").isEmpty());
+        assertTrue(index.findByPriority(0, 100).isEmpty());
+    }
+
+    @Test
+    public void findByPriority_filtersTheSharedTopBucket() {
+        WishListIndex index = new WishListIndex();
+        index.put(new WishListItem("A", "", 12, "doc1"));
+        index.put(new WishListItem("B", "", 40, "doc2"));
+
+        List<WishListItem> found = index.findByPriority(11, 20);
+        assertEquals(1, found.size());
+        assertEquals("doc1", found.get(0).getDocID());
+    }
+
+    @Test
+    public void drainChanges_saysWhatChangedSinceLastTime() {
+        WishListIndex index = new WishListIndex(true);
+        WishListItem bike = new WishListItem("Bike", "Bike shop", 2, "doc1");
+        index.put(bike);
+        index.put(new WishListItem("Lamp", "Target", 1, "doc2"));
+        index.remove("doc2");
+
+        Map<String, WishListItem> changes = index.drainChanges();
+        assertEquals(2, changes.size());
+        assertSame(bike, changes.get("doc1"));
+        assertTrue(changes.containsKey("doc2"));
+        assertNull(changes.get("doc2"));
+        assertTrue(index.drainChanges().isEmpty());
+
+        // after a clear anything may have changed
+        index.clear();
+        index.put(bike);
+        assertNull(index.drainChanges());
+        assertTrue(index.drainChanges().isEmpty());
+    }
+
+    @Test
+    public void searchByName_onFiftyThousandItems() {
+        WishListIndex index = new WishListIndex();
+        for (int i = 0; i < 50000; i++) {
+            index.put(new WishListItem("Item " + i, "Store " + (i % 100), i % 10, "doc" + i));
+        }
+        assertEquals(20, index.searchByName("item", 20).size());
+        assertEquals(500, index.findByLocation("7").size());
+        // "Item 12345" has the words "item" and "12345"
+        List<WishListItem> found = index.searchByName("12345", 20);
+        assertEquals(1, found.size());
+        assertEquals("doc12345", found.get(0).getDocID());
+        // how fast this is, is measured by IndexBenchmark in the benchmark module
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the hand written Firestore mapping of WishListItem.
+ */
+public class WishListItemMapperTest {
+    @Test
+    public void roundTrip_keepsEveryField() {
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "abc123");
+        WishListItem back = WishListItemMapper.fromMap("abc123", WishListItemMapper.toMap(w));
+
+        assertEquals("Bike", back.getItemName());
+        assertEquals("Bike shop", back.getItemLocation());
+        assertEquals(2, back.getItemPriority());
+        assertEquals("abc123", back.getDocID());
+    }
+
+    @Test
+    public void fromMap_readsFirestoreLongsAndFillsMissingFields() {
+        Map<String, Object> data = new HashMap<>();
+        data.put(WishListItemMapper.FIELD_NAME, "Lamp");
+        data.put(WishListItemMapper.FIELD_PRIORITY, 3L);
+
+        WishListItem w = WishListItemMapper.fromMap("doc1", data);
+        assertEquals("Lamp", w.getItemName());
+        assertEquals("", w.getItemLocation());
+        assertEquals(3, w.getItemPriority());
+        assertEquals("doc1", w.getDocID());
+    }
+
+    @Test
+    public void toMap_onlyIncludesMaskedFields() {
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "abc123");
+        Map<String, Object> data = WishListItemMapper.toMap(w, WishListItemMapper.MASK_LOCATION);
+
+        assertEquals(1, data.size());
+        assertEquals("Bike shop", data.get(WishListItemMapper.FIELD_LOCATION));
+    }
+
+    @Test
+    public void setters_markOnlyRealChangesAsDirty() {
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "abc123");
+        w.setItemName("Bike");
+        assertEquals(0, w.getDirtyFields());
+
+        w.setItemLocation("Garage sale");
+        assertEquals(WishListItemMapper.MASK_LOCATION, w.getDirtyFields());
+        assertEquals(1, WishListItemMapper.toMap(w, w.getDirtyFields()).size());
+
+        w.clearDirtyFields();
+        assertEquals(0, w.getDirtyFields());
+    }
+
+    @Test
+    public void pendingSync_isNeverSavedOrCountedAsAChange() {
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "abc123");
+        w.setPendingSync(true);
+        assertEquals(0, w.getDirtyFields());
+        assertEquals(4, WishListItemMapper.toMap(w).size());
+
+        WishListItem back = WishListItemMapper.fromMap("abc123", WishListItemMapper.toMap(w));
+        assertFalse(back.isPendingSync());
+    }
+}
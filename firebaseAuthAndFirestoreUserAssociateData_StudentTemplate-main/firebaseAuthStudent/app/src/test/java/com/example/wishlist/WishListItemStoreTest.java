@@ -0,0 +1,43 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for handing items between screens.
+ */
+public class WishListItemStoreTest {
+    @Test
+    public void get_returnsTheSameObjectThatWasPut() {
+        WishListItemStore store = new WishListItemStore();
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "doc1");
+
+        String docId = store.put(w);
+
+        assertEquals("doc1", docId);
+        assertSame(w, store.get(docId));
+        store.release(docId);
+        assertNull(store.get(docId));
+    }
+
+    @Test
+    public void put_dropsTheLeastRecentlyUsedItemWhenFull() {
+        WishListItemStore store = new WishListItemStore(2);
+        store.put(new WishListItem("Bike", "Bike shop", 2, "doc1"));
+        store.put(new WishListItem("Lamp", "Target", 1, "doc2"));
+        // using doc1 makes doc2 the oldest
+        store.get("doc1");
+        store.put(new WishListItem("Bell", "Target", 3, "doc3"));
+
+        assertEquals(2, store.size());
+        assertNotNull(store.get("doc1"));
+        assertNull(store.get("doc2"));
+        assertNotNull(store.get("doc3"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void put_rejectsItemsThatWereNeverSaved() {
+        new WishListItemStore().put(new WishListItem("Bike", "Bike shop", 2));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for how WishListMerge folds what Firestore sends into the local list.
+ */
+public class WishListMergeTest {
+    private final ArrayList<WishListItem> items = new ArrayList<>();
+    private final WishListIndex index = new WishListIndex();
+
+    @Test
+    public void changes_replaceByDocIdAddNewOnesAndDropRemovedOnes() {
+        WishListMerge.replaceAll(items, index, Arrays.asList(
+                new WishListItem("Bike", "Bike shop", 2, "doc1"),
+                new WishListItem("Lamp", "Target", 3, "doc2")));
+
+        WishListMerge.applyChanges(items, index,
+                Arrays.asList(new WishListItem("Red bike", "Bike shop", 2, "doc1"),
+                        new WishListItem("Desk", "Ikea", 1, "doc3")),
+                Collections.singletonList("doc2"));
+
+        assertEquals(2, items.size());
+        assertEquals("Red bike", items.get(0).getItemName());
+        assertEquals("doc3", items.get(1).getDocID());
+        assertEquals(-1, WishListMerge.indexOfDocId(items, index, "doc2"));
+        assertNull(index.get("doc2"));
+        assertEquals("Red bike", index.get("doc1").getItemName());
+    }
+
+    @Test
+    public void pendingWrites_goBackOnTopOfAFullRead() {
+        WishListItem added = new WishListItem("Desk", "Ikea", 1, "doc3");
+        WishListItem edited = new WishListItem("Red bike", "Bike shop", 2, "doc1");
+        WishListItem deleted = new WishListItem("Lamp", "Target", 3, "doc2");
+        List<PendingMutation> pending = Arrays.asList(
+                new PendingMutation(PendingMutation.Type.ADD, added, null, -1),
+                new PendingMutation(PendingMutation.Type.EDIT, edited, null, 0),
+                new PendingMutation(PendingMutation.Type.DELETE, deleted, deleted, 1));
+
+        // the server hasn't seen any of them yet
+        WishListMerge.replaceAll(items, index, Arrays.asList(
+                new WishListItem("Bike", "Bike shop", 2, "doc1"),
+                new WishListItem("Lamp", "Target", 3, "doc2")));
+        WishListMerge.reapply(items, index, pending);
+
+        assertEquals(Arrays.asList(edited, added), items);
+        assertSame(edited, index.get("doc1"));
+        assertNull(index.get("doc2"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the latency histograms and counters.
+ */
+public class WishListMetricsTest {
+    @Test
+    public void histogram_percentilesLandInTheRightBucket() {
+        WishListMetrics.LatencyHistogram h = new WishListMetrics.LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            h.record(100);
+        }
+        h.record(50000);
+
+        assertEquals(100, h.getCount());
+        assertEquals(128, h.getPercentileMicros(50));
+        assertEquals(128, h.getPercentileMicros(99));
+        assertEquals(50000, h.getPercentileMicros(100));
+        assertEquals(50000, h.getMaxMicros());
+    }
+
+    @Test
+    public void bucketFor_roundsUpToAPowerOfTwo() {
+        assertEquals(0, WishListMetrics.LatencyHistogram.bucketFor(0));
+        assertEquals(0, WishListMetrics.LatencyHistogram.bucketFor(1));
+        assertEquals(1, WishListMetrics.LatencyHistogram.bucketFor(2));
+        assertEquals(2, WishListMetrics.LatencyHistogram.bucketFor(3));
+        assertEquals(10, WishListMetrics.LatencyHistogram.bucketFor(1024));
+        assertEquals(WishListMetrics.LatencyHistogram.BUCKETS - 1,
+                WishListMetrics.LatencyHistogram.bucketFor(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void record_tracesOnlyWhenSampled() {
+        WishListMetrics metrics = new WishListMetrics();
+        final int[] spans = new int[1];
+        WishListMetrics.Tracer tracer = new WishListMetrics.Tracer() {
+            @Override
+            public void onSpan(String name, long startNanos, long durationNanos) {
+                spans[0]++;
+            }
+        };
+        metrics.setTracer(tracer, 0);
+        metrics.record(WishListMetrics.Op.READ, System.nanoTime());
+        assertEquals(0, spans[0]);
+
+        metrics.setTracer(tracer, 1);
+        metrics.record(WishListMetrics.Op.READ, System.nanoTime());
+        assertEquals(1, spans[0]);
+        assertEquals(2, metrics.getHistogram(WishListMetrics.Op.READ).getCount());
+    }
+
+    @Test
+    public void estimateSize_countsUtf8Bytes() {
+        WishListItem w = new WishListItem("é", "", 1, "d");
+        // "itemName" + 1, then 2 bytes for é + 1
+        assertEquals(9 + 3, WishListItemMapper.estimateSize(w, WishListItemMapper.MASK_NAME));
+        assertEquals(13 + 8, WishListItemMapper.estimateSize(w, WishListItemMapper.MASK_PRIORITY));
+    }
+}
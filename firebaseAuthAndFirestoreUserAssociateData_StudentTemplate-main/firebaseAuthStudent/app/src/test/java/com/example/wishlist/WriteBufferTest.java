@@ -0,0 +1,69 @@
+package com.example.wishlist;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for how WriteBuffer folds several changes to one document together.
+ */
+public class WriteBufferTest {
+    @Test
+    public void addThenEdit_isOneSetOfTheNewestItem() {
+        WriteBuffer buffer = new WriteBuffer();
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "doc1");
+        buffer.put(new PendingMutation(PendingMutation.Type.ADD, w, null, -1));
+        w.setItemName("Red bike");
+        buffer.put(new PendingMutation(PendingMutation.Type.EDIT, w, null, 0));
+
+        List<WriteBuffer.BufferedWrite> writes = buffer.drain();
+        assertEquals(1, writes.size());
+        assertEquals(PendingMutation.Type.ADD, writes.get(0).getType());
+        assertEquals(WishListItemMapper.MASK_ALL, writes.get(0).getMask());
+        assertEquals(2, writes.get(0).getMutations().size());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void twoEdits_sendBothChangedFields() {
+        WriteBuffer buffer = new WriteBuffer();
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "doc1");
+        w.setItemName("Red bike");
+        buffer.put(new PendingMutation(PendingMutation.Type.EDIT, w, null, 0));
+        w.clearDirtyFields();
+        w.setItemLocation("Garage sale");
+        buffer.put(new PendingMutation(PendingMutation.Type.EDIT, w, null, 0));
+
+        WriteBuffer.BufferedWrite write = buffer.drain().get(0);
+        assertEquals(PendingMutation.Type.EDIT, write.getType());
+        assertEquals(WishListItemMapper.MASK_NAME | WishListItemMapper.MASK_LOCATION, write.getMask());
+        assertEquals(2, write.getData().size());
+        assertEquals("Garage sale", write.getData().get(WishListItemMapper.FIELD_LOCATION));
+    }
+
+    @Test
+    public void addThenDelete_cancelsOut() {
+        WriteBuffer buffer = new WriteBuffer();
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "doc1");
+        PendingMutation add = new PendingMutation(PendingMutation.Type.ADD, w, null, -1);
+        buffer.put(add);
+        List<PendingMutation> cancelled = buffer.put(new PendingMutation(PendingMutation.Type.DELETE, w, w, 0));
+
+        assertEquals(2, cancelled.size());
+        assertSame(add, cancelled.get(0));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void editThenDelete_isJustADelete() {
+        WriteBuffer buffer = new WriteBuffer();
+        WishListItem w = new WishListItem("Bike", "Bike shop", 2, "doc1");
+        w.setItemName("Red bike");
+        buffer.put(new PendingMutation(PendingMutation.Type.EDIT, w, null, 0));
+        assertTrue(buffer.put(new PendingMutation(PendingMutation.Type.DELETE, w, w, 0)).isEmpty());
+
+        assertEquals(PendingMutation.Type.DELETE, buffer.drain().get(0).getType());
+    }
+}
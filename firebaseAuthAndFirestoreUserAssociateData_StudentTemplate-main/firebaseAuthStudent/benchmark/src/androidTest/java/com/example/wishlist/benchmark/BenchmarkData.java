@@ -0,0 +1,107 @@
+package com.example.wishlist.benchmark;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.wishlist.WishListItem;
+import com.example.wishlist.WishListItemMapper;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Test lists shared by all the benchmarks, so every benchmark runs at the same sizes.
+ */
+public class BenchmarkData {
+    // list sizes every benchmark is run with
+    public static Collection<Object[]> sizes() {
+        return Arrays.asList(new Object[][] {{10}, {100}, {1000}, {10000}, {100000}});
+    }
+
+    public static ArrayList<WishListItem> items(int count) {
+        ArrayList<WishListItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new WishListItem("Item " + i, "Store " + (i % 50), i % 10 + 1, docId(i)));
+        }
+        return items;
+    }
+
+    private static FirebaseFirestore offlineFirestore;
+
+    /**
+     * Real DocumentSnapshots of items(count), the same kind of object the listener and reads hand
+     * FirebaseHelper.  They come from a Firestore that has its network turned off and keeps its
+     * cache in memory, so the writes only land in that cache, where a Source.CACHE read finds them
+     * straight away.  Nothing is sent anywhere.
+     *
+     * Call it from the test thread, it waits on Firestore.
+     */
+    public static List<DocumentSnapshot> documents(int count) throws Exception {
+        FirebaseFirestore firestore = offlineFirestore();
+        CollectionReference collection = firestore.collection("benchmark" + count);
+        QuerySnapshot snapshots = Tasks.await(collection.get(Source.CACHE));
+        if (snapshots.size() != count) {
+            ArrayList<WishListItem> items = items(count);
+            for (int start = 0; start < count; start += 500) {
+                WriteBatch batch = firestore.batch();
+                for (int i = start; i < Math.min(start + 500, count); i++) {
+                    WishListItem w = items.get(i);
+                    batch.set(collection.document(w.getDocID()), WishListItemMapper.toMap(w));
+                }
+                // with the network off this never finishes, but the cache has the documents already
+                batch.commit();
+            }
+            snapshots = Tasks.await(collection.get(Source.CACHE));
+        }
+        return snapshots.getDocuments();
+    }
+
+    private static synchronized FirebaseFirestore offlineFirestore() throws Exception {
+        if (offlineFirestore == null) {
+            Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+            // a made up project, it is never contacted
+            FirebaseOptions options = new FirebaseOptions.Builder()
+                    .setProjectId("demo-wishlist")
+                    .setApplicationId("1:1:android:1")
+                    .setApiKey("benchmark")
+                    .build();
+            FirebaseApp app = FirebaseApp.initializeApp(context, options, "benchmark");
+            offlineFirestore = FirebaseFirestore.getInstance(app);
+            offlineFirestore.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                    .setPersistenceEnabled(false)
+                    .build());
+            Tasks.await(offlineFirestore.disableNetwork());
+        }
+        return offlineFirestore;
+    }
+
+    public static String docId(int i) {
+        // about as long as a real Firestore id
+        return String.format("doc%017d", i);
+    }
+
+    public static WishListItem copy(WishListItem w) {
+        return new WishListItem(w.getItemName(), w.getItemLocation(), w.getItemPriority(), w.getDocID());
+    }
+
+    public static List<WishListItem> copyAll(List<WishListItem> items) {
+        ArrayList<WishListItem> copies = new ArrayList<>(items.size());
+        for (WishListItem w : items) {
+            copies.add(copy(w));
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.wishlist.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.example.wishlist.WishListDiffCallback;
+import com.example.wishlist.WishListItem;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The diff WishListAdapter (through ListAdapter / AsyncListDiffer) works out every time
+ * ViewListActivity is handed a new list: one item renamed, one added and one deleted.
+ */
+@RunWith(Parameterized.class)
+public class DiffBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public int size;
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static Collection<Object[]> sizes() {
+        return BenchmarkData.sizes();
+    }
+
+    @Test
+    public void smallChange() {
+        List<WishListItem> oldList = BenchmarkData.items(size);
+        List<WishListItem> newList = BenchmarkData.copyAll(oldList);
+        newList.get(size / 2).setItemName("Renamed");
+        newList.remove(0);
+        newList.add(new WishListItem("New item", "Store", 1, "new-doc"));
+
+        DiffUtil.Callback callback = new ItemListCallback(oldList, newList);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            DiffUtil.calculateDiff(callback);
+        }
+    }
+
+    @Test
+    public void noChange() {
+        List<WishListItem> oldList = BenchmarkData.items(size);
+        List<WishListItem> newList = BenchmarkData.copyAll(oldList);
+
+        DiffUtil.Callback callback = new ItemListCallback(oldList, newList);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            DiffUtil.calculateDiff(callback);
+        }
+    }
+
+    // the same thing AsyncListDiffer wraps around the adapter's ItemCallback
+    private static class ItemListCallback extends DiffUtil.Callback {
+        private final WishListDiffCallback itemCallback = new WishListDiffCallback();
+        private final List<WishListItem> oldList;
+        private final List<WishListItem> newList;
+
+        ItemListCallback(List<WishListItem> oldList, List<WishListItem> newList) {
+            this.oldList = new ArrayList<>(oldList);
+            this.newList = new ArrayList<>(newList);
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return itemCallback.areItemsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return itemCallback.areContentsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            return itemCallback.getChangePayload(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+    }
+}
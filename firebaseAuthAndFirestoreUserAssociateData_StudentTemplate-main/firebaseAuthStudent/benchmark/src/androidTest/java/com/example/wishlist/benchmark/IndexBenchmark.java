@@ -0,0 +1,69 @@
+package com.example.wishlist.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.example.wishlist.WishListIndex;
+import com.example.wishlist.WishListItem;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Collection;
+
+/**
+ * The lookups FirebaseHelper's search methods make: one as-you-type name search per key press,
+ * and the location and priority filters.
+ */
+@RunWith(Parameterized.class)
+public class IndexBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public int size;
+
+    private WishListIndex index;
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static Collection<Object[]> sizes() {
+        return BenchmarkData.sizes();
+    }
+
+    @Before
+    public void buildIndex() {
+        index = new WishListIndex();
+        for (WishListItem w : BenchmarkData.items(size)) {
+            index.put(w);
+        }
+    }
+
+    @Test
+    public void searchByName() {
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            // a different prefix each time, like someone typing
+            index.searchByName("1" + (i++ % 10), 20);
+        }
+    }
+
+    @Test
+    public void findByLocation() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            index.findByLocation("7");
+        }
+    }
+
+    @Test
+    public void findByPriority() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            index.findByPriority(2, 4);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.wishlist.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.example.wishlist.WishListItem;
+import com.example.wishlist.WishListItemMapper;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.util.CustomClassMapper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Turning WishListItems into the Maps Firestore stores and back, by hand with WishListItemMapper
+ * and the way Firestore does it on its own with reflection (toObject() and set(w), which both go
+ * through CustomClassMapper).  Every read of the list decodes every document, and every write
+ * encodes one.
+ *
+ * Each iteration maps ONE document, going round the list, so the time and allocation count in the
+ * results are per document.  The list size only changes how much of it fits in the CPU caches.
+ */
+@RunWith(Parameterized.class)
+public class MapperBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public int size;
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static Collection<Object[]> sizes() {
+        return BenchmarkData.sizes();
+    }
+
+    @Test
+    public void encode() {
+        ArrayList<WishListItem> items = BenchmarkData.items(size);
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            WishListItemMapper.toMap(items.get(i));
+            i = (i + 1) % size;
+        }
+    }
+
+    @Test
+    public void encodeReflective() {
+        // what set(w) does to the item before sending it
+        ArrayList<WishListItem> items = BenchmarkData.items(size);
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            CustomClassMapper.convertToPlainJavaTypes(items.get(i));
+            i = (i + 1) % size;
+        }
+    }
+
+    @Test
+    public void encodeOneField() {
+        // what an edit of just the name sends
+        ArrayList<WishListItem> items = BenchmarkData.items(size);
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            WishListItemMapper.toMap(items.get(i), WishListItemMapper.MASK_NAME);
+            i = (i + 1) % size;
+        }
+    }
+
+    @Test
+    public void decode() throws Exception {
+        // fromSnapshot is what FirebaseHelper runs on every document the listener and reads hand it
+        List<DocumentSnapshot> documents = BenchmarkData.documents(size);
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            WishListItemMapper.fromSnapshot(documents.get(i));
+            i = (i + 1) % size;
+        }
+    }
+
+    @Test
+    public void decodeReflective() throws Exception {
+        // what fromSnapshot replaced
+        List<DocumentSnapshot> documents = BenchmarkData.documents(size);
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            documents.get(i).toObject(WishListItem.class);
+            i = (i + 1) % size;
+        }
+    }
+}
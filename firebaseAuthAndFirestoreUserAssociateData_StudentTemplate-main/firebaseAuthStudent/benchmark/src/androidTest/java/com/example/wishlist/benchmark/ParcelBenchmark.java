@@ -0,0 +1,63 @@
+package com.example.wishlist.benchmark;
+
+import android.os.Parcel;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.example.wishlist.WishListItem;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * How long it takes to put a list of WishListItems into a Parcel and read it back, which is what
+ * happens when items are passed between screens in an Intent or saved in a Bundle.
+ */
+@RunWith(Parameterized.class)
+public class ParcelBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public int size;
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static Collection<Object[]> sizes() {
+        return BenchmarkData.sizes();
+    }
+
+    @Test
+    public void writeList() {
+        ArrayList<WishListItem> items = BenchmarkData.items(size);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Parcel parcel = Parcel.obtain();
+            parcel.writeTypedList(items);
+            state.pauseTiming();
+            parcel.recycle();
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void readList() {
+        ArrayList<WishListItem> items = BenchmarkData.items(size);
+        Parcel parcel = Parcel.obtain();
+        parcel.writeTypedList(items);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            parcel.setDataPosition(0);
+            ArrayList<WishListItem> read = parcel.createTypedArrayList(WishListItem.CREATOR);
+            if (read.size() != size) {
+                throw new AssertionError("read " + read.size());
+            }
+        }
+        parcel.recycle();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.wishlist.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.example.wishlist.PendingMutation;
+import com.example.wishlist.WishListIndex;
+import com.example.wishlist.WishListItem;
+import com.example.wishlist.WishListItemMapper;
+import com.example.wishlist.WishListMerge;
+import com.example.wishlist.WishListSnapshot;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The two ways FirebaseHelper can bring its list up to date after one item changes on the server:
+ *
+ *  - fullRefresh:        what readData does (incrementalSync off).  decode every document, replace
+ *                        myItems, rebuild the index and publish a snapshot
+ *  - incrementalApply:   what the snapshot listener does.  decode only the changed document, swap
+ *                        it in by docID, update the index and publish a snapshot
+ *
+ * FirebaseHelper itself needs a signed in user and a live Firestore, so these call the same code
+ * it does (WishListItemMapper.fromSnapshot, WishListMerge, WishListSnapshot.of) on real
+ * DocumentSnapshots from BenchmarkData.documents.
+ */
+@RunWith(Parameterized.class)
+public class SyncStrategyBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public int size;
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static Collection<Object[]> sizes() {
+        return BenchmarkData.sizes();
+    }
+
+    private final ArrayList<WishListItem> myItems = new ArrayList<>();
+    private final WishListIndex itemIndex = new WishListIndex();
+    // no writes of our own are waiting, but FirebaseHelper still goes through them every time
+    private final List<PendingMutation> pendingMutations = Collections.emptyList();
+    private WishListSnapshot published = WishListSnapshot.EMPTY;
+
+    @Test
+    public void fullRefresh() throws Exception {
+        List<DocumentSnapshot> server = BenchmarkData.documents(size);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            WishListMerge.replaceAll(myItems, itemIndex, decode(server));
+            WishListMerge.reapply(myItems, itemIndex, pendingMutations);
+            publish();
+        }
+    }
+
+    @Test
+    public void incrementalApply() throws Exception {
+        List<DocumentSnapshot> server = BenchmarkData.documents(size);
+        WishListMerge.replaceAll(myItems, itemIndex, decode(server));
+        // the item in the middle keeps coming back as modified
+        List<DocumentSnapshot> changed = Collections.singletonList(server.get(size / 2));
+        List<String> removedIds = Collections.emptyList();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            WishListMerge.applyChanges(myItems, itemIndex, decode(changed), removedIds);
+            WishListMerge.reapply(myItems, itemIndex, pendingMutations);
+            publish();
+        }
+    }
+
+    // the loop readData and the listener run on each document
+    private static List<WishListItem> decode(List<DocumentSnapshot> documents) {
+        ArrayList<WishListItem> items = new ArrayList<>(documents.size());
+        for (DocumentSnapshot doc : documents) {
+            WishListItem w = WishListItemMapper.fromSnapshot(doc);
+            w.setPendingSync(doc.getMetadata().hasPendingWrites());
+            items.add(w);
+        }
+        return items;
+    }
+
+    private void publish() {
+        published = WishListSnapshot.of(published.getVersion() + 1, myItems);
+    }
+}